@@ -6,6 +6,7 @@ import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import java.io.UncheckedIOException;
 
 public class Main {
     public static void main(String[] args) {
@@ -28,7 +29,18 @@ public class Main {
             loginDialog.setVisible(true);
             
             if (loginDialog.isAuthenticated()) {
-                new InventoryManagementSystem(authService);
+                try {
+                    new InventoryManagementSystem(authService);
+                } catch (UncheckedIOException e) {
+                    // The damaged file is left untouched so it can be repaired or restored
+                    JOptionPane.showMessageDialog(
+                        null,
+                        e.getMessage() + "\nThe file was not changed. Restore it from a backup before starting again.",
+                        "Inventory Data Damaged",
+                        JOptionPane.ERROR_MESSAGE
+                    );
+                    System.exit(1);
+                }
             } else {
                 JOptionPane.showMessageDialog(
                     null,
@@ -6,6 +6,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
+import utils.BinaryIO;
 
 public class AuthService {
     private static final String USER_FILE = "users.dat";
@@ -88,12 +89,21 @@ public class AuthService {
         }
     }
 
-    @SuppressWarnings("unchecked")
     private void loadUsers() {
         File file = new File(USER_FILE);
         if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                users = (Map<String, User>) ois.readObject();
+            try {
+                boolean legacyFormat = BinaryIO.isJavaSerialized(file);
+                users = new HashMap<>(UserCodec.readAll(file));
+
+                if (legacyFormat) {
+                    // One-time migration: keep the serialized file and rewrite it in the binary format
+                    File legacyFile = new File(USER_FILE + ".legacy");
+                    if (!legacyFile.exists() && !file.renameTo(legacyFile)) {
+                        System.err.println("Could not keep " + file.getName() + " as " + legacyFile.getName());
+                    }
+                    saveUsers();
+                }
             } catch (Exception e) {
                 e.printStackTrace();
                 users = new HashMap<>();
@@ -102,10 +112,10 @@ public class AuthService {
     }
 
     private void saveUsers() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(USER_FILE))) {
-            oos.writeObject(users);
+        try {
+            UserCodec.writeAll(users, new File(USER_FILE));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
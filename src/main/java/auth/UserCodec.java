@@ -0,0 +1,56 @@
+package auth;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import utils.BinaryIO;
+
+/**
+ * Binary record format for user accounts. Version 1 writes username, password
+ * hash and role as length-prefixed UTF-8.
+ */
+class UserCodec {
+    static final char RECORD_TYPE = 'U';
+    static final int VERSION = 1;
+
+    static void writeAll(Map<String, User> users, File file) throws IOException {
+        BinaryIO.writeFile(file, out -> {
+            BinaryIO.writeHeader(out, RECORD_TYPE, VERSION);
+            BinaryIO.writeVarInt(out, users.size());
+            for (User user : users.values()) {
+                BinaryIO.writeString(out, user.getUsername());
+                BinaryIO.writeString(out, user.getPasswordHash());
+                BinaryIO.writeString(out, user.getRole());
+            }
+        });
+    }
+
+    /** Reads a user file in either the binary format or the old serialized form. */
+    static Map<String, User> readAll(File file) throws IOException {
+        if (BinaryIO.isJavaSerialized(file)) {
+            return readLegacy(file);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = BinaryIO.readHeader(in, RECORD_TYPE);
+            if (version != VERSION) {
+                throw new IOException("Unsupported user format version " + version);
+            }
+            int count = BinaryIO.readVarInt(in);
+            Map<String, User> users = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                User user = new User(BinaryIO.readString(in), BinaryIO.readString(in), BinaryIO.readString(in));
+                users.put(user.getUsername(), user);
+            }
+            return users;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, User> readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (Map<String, User>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable user file " + file.getName() + ": " + e.getMessage());
+        }
+    }
+}
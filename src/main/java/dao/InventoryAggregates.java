@@ -0,0 +1,142 @@
+package dao;
+
+import java.util.*;
+import models.CategoryDictionary;
+import models.Product;
+
+/**
+ * Dashboard figures kept up to date as products are added and removed, so
+ * reading them does not need a pass over the catalog.
+ */
+class InventoryAggregates {
+    static final String UNCATEGORIZED = "Uncategorized";
+
+    // Best sellers first; ties go to the lower id
+    private static final Comparator<Product> BY_SOLD_DESC =
+        Comparator.comparingInt(Product::getSold).reversed().thenComparingInt(Product::getId);
+
+    // Money in cents; long sums are exact, so they never drift from a recompute
+    private long totalValue;
+    // Keyed by category code
+    private final Map<Integer, CategoryTotal> categorySales = new HashMap<>();
+    private final TreeSet<Product> bySold = new TreeSet<>(BY_SOLD_DESC);
+
+    private static class CategoryTotal {
+        int products;
+        long sales;
+    }
+
+    void add(Product product) {
+        totalValue += product.getQuantity() * product.getPriceCents();
+        CategoryTotal total = categorySales.computeIfAbsent(product.getCategoryCode(), k -> new CategoryTotal());
+        total.products++;
+        total.sales += product.getSold() * product.getPriceCents();
+        bySold.add(product);
+    }
+
+    void remove(Product product) {
+        totalValue -= product.getQuantity() * product.getPriceCents();
+        int category = product.getCategoryCode();
+        CategoryTotal total = categorySales.get(category);
+        if (total != null) {
+            total.sales -= product.getSold() * product.getPriceCents();
+            if (--total.products == 0) {
+                categorySales.remove(category);
+            }
+        }
+        bySold.remove(product);
+    }
+
+    void clear() {
+        totalValue = 0;
+        categorySales.clear();
+        bySold.clear();
+    }
+
+    long getTotalValueCents() {
+        return totalValue;
+    }
+
+    Map<String, Long> getCategorySalesCents() {
+        Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<Integer, CategoryTotal> entry : categorySales.entrySet()) {
+            result.merge(salesCategory(entry.getKey()), entry.getValue().sales, Long::sum);
+        }
+        return result;
+    }
+
+    Product getTopSeller() {
+        return bySold.isEmpty() ? null : bySold.first();
+    }
+
+    List<Product> getTopSellers(int limit) {
+        List<Product> result = new ArrayList<>(Math.min(limit, bySold.size()));
+        for (Product product : bySold) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(product);
+        }
+        return result;
+    }
+
+    /**
+     * Recomputes every figure from the catalog and reports each one that
+     * disagrees with the running value.
+     */
+    List<String> verify(ProductVector products) {
+        int codes = CategoryDictionary.size();
+        long expectedValue = 0;
+        // Sales per category code, followed by product counts per code
+        long[] sales = new long[codes * 2];
+        Product expectedTop = null;
+        for (int slot = 0; slot < products.slotCount(); slot++) {
+            Product product = products.get(slot);
+            if (product == null) {
+                continue;
+            }
+            expectedValue += product.getQuantity() * product.getPriceCents();
+            sales[product.getCategoryCode()] += product.getSold() * product.getPriceCents();
+            sales[codes + product.getCategoryCode()]++;
+            if (expectedTop == null || BY_SOLD_DESC.compare(product, expectedTop) < 0) {
+                expectedTop = product;
+            }
+        }
+
+        List<String> mismatches = new ArrayList<>();
+        if (totalValue != expectedValue) {
+            mismatches.add("total inventory value " + totalValue + " != " + expectedValue);
+        }
+        Map<String, Long> actualSales = getCategorySalesCents();
+        Map<String, Long> expectedSales = new HashMap<>();
+        for (int code = 0; code < codes; code++) {
+            if (sales[codes + code] > 0) {
+                expectedSales.merge(salesCategory(code), sales[code], Long::sum);
+            }
+        }
+        if (!actualSales.keySet().equals(expectedSales.keySet())) {
+            mismatches.add("sales categories " + actualSales.keySet() + " != " + expectedSales.keySet());
+        } else {
+            for (Map.Entry<String, Long> entry : expectedSales.entrySet()) {
+                if (!actualSales.get(entry.getKey()).equals(entry.getValue())) {
+                    mismatches.add("sales for " + entry.getKey() + " " + actualSales.get(entry.getKey()) + " != " + entry.getValue());
+                }
+            }
+        }
+        Product top = getTopSeller();
+        int topId = top == null ? -1 : top.getId();
+        int expectedTopId = expectedTop == null ? -1 : expectedTop.getId();
+        if (topId != expectedTopId) {
+            mismatches.add("top seller " + describe(topId) + " != " + describe(expectedTopId));
+        }
+        return mismatches;
+    }
+
+    static String salesCategory(int code) {
+        return code == CategoryDictionary.NONE ? UNCATEGORIZED : CategoryDictionary.name(code);
+    }
+
+    private static String describe(int id) {
+        return id < 0 ? "none" : "#" + id;
+    }
+}
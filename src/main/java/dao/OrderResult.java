@@ -0,0 +1,51 @@
+package dao;
+
+import java.util.Collections;
+import java.util.List;
+import models.OrderLine;
+
+public class OrderResult {
+    private final List<LineFailure> failures;
+
+    OrderResult(List<LineFailure> failures) {
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    // An order is committed only if every line passed its stock check
+    public boolean isCommitted() {
+        return failures.isEmpty();
+    }
+
+    public List<LineFailure> getFailures() {
+        return failures;
+    }
+
+    public static class LineFailure {
+        private final int lineIndex;
+        private final OrderLine line;
+        private final StockResult reason;
+
+        LineFailure(int lineIndex, OrderLine line, StockResult reason) {
+            this.lineIndex = lineIndex;
+            this.line = line;
+            this.reason = reason;
+        }
+
+        public int getLineIndex() {
+            return lineIndex;
+        }
+
+        public OrderLine getLine() {
+            return line;
+        }
+
+        public StockResult getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + (lineIndex + 1) + " (" + line + "): " + reason;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package dao;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides when a DAO's pending changes reach the disk. The DAO records each
+ * change in memory and calls changed(); the scheduler then runs the DAO's
+ * flush either straight away on the calling thread (SYNC), at most one
+ * interval after the first unflushed change (GROUP_COMMIT), or once no change
+ * has arrived for one interval (ON_IDLE). Every flush ends with an fsync.
+ * A failed flush keeps its changes queued and is retried one interval later.
+ * Pending changes are also flushed when the JVM shuts down.
+ */
+public class PersistenceScheduler {
+    public enum Mode {
+        SYNC,
+        GROUP_COMMIT,
+        ON_IDLE
+    }
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    interface Flusher {
+        void flush() throws IOException;
+    }
+
+    private final String name;
+    private final Flusher flusher;
+    private final Object flushLock = new Object();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile Mode mode;
+    private volatile long intervalMillis;
+    private volatile long lastChangeNanos;
+    private volatile long lastFlushTime;
+    private ScheduledExecutorService executor;
+    private volatile boolean closed;
+    private final Thread shutdownHook;
+
+    PersistenceScheduler(String name, Mode mode, long intervalMillis, Flusher flusher) {
+        this.name = name;
+        this.flusher = flusher;
+        setMode(mode, intervalMillis);
+        this.shutdownHook = new Thread(this::flush, name + "-shutdown-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setMode(Mode mode, long intervalMillis) {
+        if (mode != Mode.SYNC && intervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+        if (mode == Mode.SYNC) {
+            flush();
+        } else if (queueDepth.get() > 0) {
+            schedule(intervalMillis);
+        }
+    }
+
+    // Changes recorded but not yet flushed
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    // System.currentTimeMillis() of the last completed flush, or 0 if there has been none
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    // Throws IllegalStateException once closed, since nothing would write the change
+    void changed(int changes) {
+        if (closed) {
+            throw new IllegalStateException("Persistence for " + name + " is closed");
+        }
+        queueDepth.addAndGet(changes);
+        lastChangeNanos = System.nanoTime();
+        if (mode == Mode.SYNC) {
+            flush();
+        } else {
+            schedule(intervalMillis);
+        }
+    }
+
+    /** Writes every pending change now, on the calling thread. */
+    public void flush() {
+        synchronized (flushLock) {
+            int pending = queueDepth.getAndSet(0);
+            if (pending == 0) {
+                return;
+            }
+            try {
+                flusher.flush();
+                lastFlushTime = System.currentTimeMillis();
+            } catch (IOException e) {
+                System.err.println("Error flushing " + name + ": " + e.getMessage());
+                queueDepth.addAndGet(pending);
+                if (mode != Mode.SYNC) {
+                    schedule(intervalMillis);
+                }
+            }
+        }
+    }
+
+    /** Flushes what is pending and stops the background thread. */
+    public void close() {
+        closed = true;
+        flush();
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            scheduled.set(false);
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook flushes again, which is harmless
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        if (scheduled.get()) {
+            return;
+        }
+        // Checked under the lock close() takes, so nothing is scheduled after it
+        synchronized (this) {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                executor().schedule(this::runScheduled, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void runScheduled() {
+        scheduled.set(false);
+        if (mode == Mode.ON_IDLE) {
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastChangeNanos);
+            if (idleMillis < intervalMillis) {
+                schedule(intervalMillis - idleMillis);
+                return;
+            }
+        }
+        flush();
+    }
+
+    private synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, name + "-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,236 @@
+package dao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+import models.CategoryDictionary;
+import models.Product;
+import utils.BinaryIO;
+import utils.JobContext;
+
+/**
+ * Binary record format for products. Products are written in blocks: a table
+ * of the block's distinct category names, then a varint count and the
+ * records. Each record holds, in order: id, name, description, price in
+ * cents, quantity, sold, the category's index in the table, supplier id and
+ * reorder level, with strings as length-prefixed UTF-8 and integers as zigzag
+ * varints.
+ *
+ * A file splits the catalog into blocks of up to BLOCK_PRODUCTS, each framed
+ * by its length and CRC32C, and ends with a zero length followed by the block
+ * count. Blocks are independent, so a large file is verified and decoded in
+ * parallel, and a torn or damaged file is rejected as a whole. Files written
+ * with Java serialization before this format are still read.
+ */
+class ProductCodec {
+    static final char RECORD_TYPE = 'P';
+    static final int VERSION = 1;
+    private static final int BLOCK_PRODUCTS = 4096;
+
+    static void writeBlock(DataOutput out, Collection<Product> products) throws IOException {
+        IntIntHashMap tableIndex = new IntIntHashMap();
+        List<String> table = new ArrayList<>();
+        for (Product product : products) {
+            if (!tableIndex.containsKey(product.getCategoryCode())) {
+                tableIndex.put(product.getCategoryCode(), table.size());
+                table.add(product.getCategory());
+            }
+        }
+        BinaryIO.writeVarInt(out, table.size());
+        for (String category : table) {
+            BinaryIO.writeString(out, category);
+        }
+        BinaryIO.writeVarInt(out, products.size());
+        for (Product product : products) {
+            BinaryIO.writeSignedVarInt(out, product.getId());
+            BinaryIO.writeString(out, product.getName());
+            BinaryIO.writeString(out, product.getDescription());
+            BinaryIO.writeSignedVarLong(out, product.getPriceCents());
+            BinaryIO.writeSignedVarInt(out, product.getQuantity());
+            BinaryIO.writeSignedVarInt(out, product.getSold());
+            BinaryIO.writeVarInt(out, tableIndex.get(product.getCategoryCode(), 0));
+            BinaryIO.writeSignedVarInt(out, product.getSupplierId());
+            BinaryIO.writeSignedVarInt(out, product.getReorderLevel());
+        }
+    }
+
+    static List<Product> readBlock(DataInput in) throws IOException {
+        int[] categoryCodes = new int[BinaryIO.readVarInt(in)];
+        for (int i = 0; i < categoryCodes.length; i++) {
+            categoryCodes[i] = CategoryDictionary.code(BinaryIO.readString(in));
+        }
+        int count = BinaryIO.readVarInt(in);
+        List<Product> products = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            products.add(readProduct(in, categoryCodes));
+        }
+        return products;
+    }
+
+    private static Product readProduct(DataInput in, int[] categoryCodes) throws IOException {
+        int id = BinaryIO.readSignedVarInt(in);
+        String name = BinaryIO.readString(in);
+        String description = BinaryIO.readString(in);
+        long priceCents = BinaryIO.readSignedVarLong(in);
+        int quantity = BinaryIO.readSignedVarInt(in);
+        int sold = BinaryIO.readSignedVarInt(in);
+        int index = BinaryIO.readVarInt(in);
+        if (index < 0 || index >= categoryCodes.length) {
+            throw new IOException("Category index " + index + " outside the block's table");
+        }
+        int supplierId = BinaryIO.readSignedVarInt(in);
+        int reorderLevel = BinaryIO.readSignedVarInt(in);
+        Product product = new Product(id, name, description, 0.0, quantity, sold, "", supplierId, reorderLevel);
+        product.setPriceCents(priceCents);
+        product.setCategoryCode(categoryCodes[index]);
+        return product;
+    }
+
+    // Returns once the file is on disk; the old file stays intact until then
+    static void writeAll(Collection<Product> products, File file) throws IOException {
+        writeAll(products, file, new JobContext());
+    }
+
+    // Cancelling leaves the old file in place
+    static void writeAll(Collection<Product> products, File file, JobContext context) throws IOException {
+        context.setTotalRows(products.size());
+        BinaryIO.writeFile(file, out -> {
+            BinaryIO.writeHeader(out, RECORD_TYPE, VERSION);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            List<Product> block = new ArrayList<>(Math.min(products.size(), BLOCK_PRODUCTS));
+            int blocks = 0;
+            for (Product product : products) {
+                block.add(product);
+                if (block.size() == BLOCK_PRODUCTS) {
+                    writeCheckedBlock(out, block, buffer, context);
+                    block.clear();
+                    blocks++;
+                }
+            }
+            if (!block.isEmpty()) {
+                writeCheckedBlock(out, block, buffer, context);
+                blocks++;
+            }
+            out.writeInt(0);
+            out.writeInt(blocks);
+        });
+    }
+
+    private static void writeCheckedBlock(DataOutput out, List<Product> block, ByteArrayOutputStream buffer,
+                                          JobContext context) throws IOException {
+        context.checkCancelled();
+        buffer.reset();
+        writeBlock(new DataOutputStream(buffer), block);
+        byte[] bytes = buffer.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+        context.addRows(block.size());
+        context.addBytes(bytes.length);
+    }
+
+    /**
+     * Reads a product file in either the binary format or the old serialized
+     * form. Throws if the file is truncated or any block fails its checksum.
+     */
+    static List<Product> readAll(File file) throws IOException {
+        if (BinaryIO.isJavaSerialized(file)) {
+            return readLegacy(file);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = BinaryIO.readHeader(in, RECORD_TYPE);
+            if (version != VERSION) {
+                throw new IOException("Unsupported product format version " + version);
+            }
+        }
+        return readChecked(file);
+    }
+
+    private static List<Product> readChecked(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // Walk the frames first; each is {offset, length, checksum}
+            List<long[]> blocks = new ArrayList<>();
+            ByteBuffer frame = ByteBuffer.allocate(2 * Integer.BYTES);
+            long size = channel.size();
+            long position = BinaryIO.HEADER_SIZE;
+            while (true) {
+                if (position + frame.capacity() > size) {
+                    throw new IOException(file.getName() + " is truncated at offset " + position);
+                }
+                readFully(channel, frame.clear(), position);
+                int length = frame.getInt(0);
+                int checksum = frame.getInt(Integer.BYTES);
+                position += frame.capacity();
+                if (length == 0) {
+                    if (checksum != blocks.size() || position != size) {
+                        throw new IOException(file.getName() + " has a damaged end marker");
+                    }
+                    break;
+                }
+                if (length < 0 || position + length > size) {
+                    throw new IOException(file.getName() + " is truncated or damaged at offset " + (position - frame.capacity()));
+                }
+                blocks.add(new long[] {position, length, checksum});
+                position += length;
+            }
+
+            List<List<Product>> decoded;
+            try {
+                decoded = IntStream.range(0, blocks.size()).parallel()
+                    .mapToObj(i -> {
+                        try {
+                            return readCheckedBlock(channel, blocks.get(i), file.getName() + " block " + i);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            List<Product> products = new ArrayList<>();
+            for (List<Product> block : decoded) {
+                products.addAll(block);
+            }
+            return products;
+        }
+    }
+
+    private static List<Product> readCheckedBlock(FileChannel channel, long[] block, String name) throws IOException {
+        byte[] bytes = new byte[(int) block[1]];
+        readFully(channel, ByteBuffer.wrap(bytes), block[0]);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length);
+        if ((int) crc.getValue() != (int) block[2]) {
+            throw new IOException(name + " failed its checksum");
+        }
+        return readBlock(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    // Positional reads, so several threads can share the channel
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Product> readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (List<Product>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable product file " + file.getName() + ": " + e.getMessage());
+        }
+    }
+}
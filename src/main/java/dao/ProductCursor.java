@@ -0,0 +1,64 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import models.Product;
+
+/**
+ * Walks the catalog page by page. In CATALOG order the cursor pins the
+ * snapshot current when it was created and resumes from a slot position, so
+ * it sees that catalog exactly, at no cost per page beyond the page itself.
+ * In a sorted order each page resumes after the last product of the previous
+ * one rather than at an offset, so products added or removed meanwhile never
+ * shift rows between pages, and each page is a seek into the order's index.
+ */
+public class ProductCursor {
+    private final ProductDAO productDAO;
+    private final ProductSort sort;
+    private final int pageSize;
+    private final ProductSnapshot snapshot;
+    private int nextSlot;
+    private Product last;
+    private boolean exhausted;
+
+    ProductCursor(ProductDAO productDAO, ProductSort sort, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.productDAO = productDAO;
+        this.sort = sort == null ? ProductSort.CATALOG : sort;
+        this.pageSize = pageSize;
+        this.snapshot = this.sort == ProductSort.CATALOG ? productDAO.snapshot() : null;
+    }
+
+    public boolean hasNext() {
+        return !exhausted;
+    }
+
+    // Returns an empty list once the catalog is exhausted
+    public List<Product> nextPage() {
+        if (exhausted) {
+            return Collections.emptyList();
+        }
+        List<Product> page;
+        if (snapshot != null) {
+            page = new ArrayList<>(pageSize);
+            while (page.size() < pageSize && nextSlot < snapshot.slotCount()) {
+                Product product = snapshot.slot(nextSlot++);
+                if (product != null) {
+                    page.add(product);
+                }
+            }
+        } else {
+            page = productDAO.getProductsAfter(last, pageSize, sort);
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+            }
+        }
+        if (page.size() < pageSize) {
+            exhausted = true;
+        }
+        return page;
+    }
+}
@@ -2,34 +2,341 @@ package dao;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import models.CategoryDictionary;
+import models.OrderLine;
 import models.Product;
+import utils.BinaryIO;
+import utils.JobContext;
+import utils.Money;
 
+/**
+ * Safe for concurrent use. Mutations are serialized under the write side of a
+ * StampedLock and end by publishing a new immutable ProductSnapshot, which
+ * getAllProducts and snapshot() return without locking or copying. Index
+ * queries take the read side, and small point reads such as getProductById
+ * first try an optimistic, lock-free read and only fall back to the read lock
+ * when a writer got in the way.
+ *
+ * Changes reach the disk through a PersistenceScheduler (see getPersistence),
+ * which by default group-commits them on a background thread.
+ */
 public class ProductDAO {
     private static final String DATA_FILE = "products.dat";
-    private List<Product> products;
+    private static final String JOURNAL_FILE = "products.log";
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 4 * 1024 * 1024;
+
+    private final StampedLock lock = new StampedLock();
+
+    // Deleted products leave a null slot behind so that the positions held by
+    // slotById stay valid; the slots are compacted once holes make up a quarter of them
+    private ProductVector products = new ProductVector();
+    private final IntIntHashMap slotById = new IntIntHashMap();
+    private volatile ProductSnapshot current = products.publish(0);
+    private boolean dirty;
     private int nextId = 1;
 
+    // Secondary indexes, kept in step with every mutation by index()/unindex().
+    // Stored products are private copies, so the values being unindexed are
+    // always the ones that were indexed.
+    // Keyed by CategoryDictionary code, so case variants of a category share an entry
+    private final Map<Integer, IntHashSet> idsByCategory = new HashMap<>();
+    private final Map<Integer, IntHashSet> idsBySupplier = new HashMap<>();
+    private int[] categoryCounts = new int[16];
+    private final TrigramIndex textIndex = new TrigramIndex();
+    private final InventoryAggregates aggregates = new InventoryAggregates();
+    // Ordered by how far stock is above the product's reorder level
+    private final TreeSet<Product> byReorderSlack = new TreeSet<>(
+        Comparator.comparingLong(ProductDAO::reorderSlack).thenComparingInt(Product::getId));
+    // One per sort order that has been paged through; built on first use and
+    // kept in step from then on, since each costs a tree node per product
+    private final Map<ProductSort, TreeSet<Product>> sortedIndexes = new EnumMap<>(ProductSort.class);
+    private volatile boolean consistencyCheck;
+
+    private final ProductStorage storage;
+    private final File dataFile;
+    private final File journalFile;
+    private final ProductJournal journal;
+    private volatile long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    private ExecutorService compactor;
+    private final Object snapshotLock = new Object();
+    private long snapshotGeneration;
+
+    // Changes waiting for the next flush. Lock order: journalLock, then
+    // snapshotLock, then pendingLock
+    private final PersistenceScheduler persistence;
+    private final Object journalLock = new Object();
+    private final Object pendingLock = new Object();
+    private final Map<Integer, Product> pendingPuts = new LinkedHashMap<>();
+    private final IntHashSet pendingDeletes = new IntHashSet();
+
     public ProductDAO() {
+        this(ProductStorage.JOURNAL);
+    }
+
+    public ProductDAO(boolean journaled) {
+        this(journaled ? ProductStorage.JOURNAL : ProductStorage.SNAPSHOT);
+    }
+
+    public ProductDAO(ProductStorage storage) {
+        this(storage, new File("."));
+    }
+
+    // Keeps the data files in the given directory. Throws UncheckedIOException
+    // if a data file or journal exists but is damaged
+    public ProductDAO(ProductStorage storage, File directory) {
+        this.storage = storage;
+        this.dataFile = new File(directory, DATA_FILE);
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.journal = storage == ProductStorage.JOURNAL ? new ProductJournal(journalFile.getPath()) : null;
+        this.persistence = new PersistenceScheduler("products", PersistenceScheduler.Mode.GROUP_COMMIT,
+            PersistenceScheduler.DEFAULT_INTERVAL_MILLIS, this::flushPending);
         loadData();
     }
 
+    // When enabled, every aggregate read is compared against a full recompute
+    public void setConsistencyCheck(boolean enabled) {
+        this.consistencyCheck = enabled;
+    }
+
+    public boolean isConsistencyCheck() {
+        return consistencyCheck;
+    }
+
+    public List<String> verifyAggregates() {
+        return read(() -> aggregates.verify(products));
+    }
+
+    // Caller holds the lock
+    private void checkAggregates() {
+        if (consistencyCheck) {
+            for (String mismatch : aggregates.verify(products)) {
+                System.err.println("Aggregate mismatch: " + mismatch);
+            }
+        }
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // The reader may observe a half-applied write; such results are thrown away
+    // by validate(), and any exception it trips over on the way is as well.
+    // Only used for reads over flat arrays and fields, never for tree walks.
+    private <T> T readOptimistic(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        return read(reader);
+    }
+
+    public boolean isJournaled() {
+        return storage == ProductStorage.JOURNAL;
+    }
+
+    public ProductStorage getStorage() {
+        return storage;
+    }
+
+    public long getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Compaction threshold must be positive");
+        }
+        this.compactionThreshold = bytes;
+    }
+
+    // Returns an immutable, point-in-time list; see snapshot()
     public List<Product> getAllProducts() {
-        return new ArrayList<>(products);
+        return current;
+    }
+
+    public ProductSnapshot snapshot() {
+        return current;
+    }
+
+    // Visits the current snapshot in catalog order without copying it
+    public void forEachProduct(Consumer<? super Product> visitor) {
+        current.forEach(visitor);
+    }
+
+    /**
+     * Returns one page of the catalog in the given order. A sorted page walks
+     * the order's index past offset products; use cursor() to walk a large
+     * catalog without the offset cost.
+     */
+    public List<Product> getProducts(int offset, int limit, ProductSort sort) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        if (sort == null || sort == ProductSort.CATALOG) {
+            ProductSnapshot snapshot = current;
+            int from = Math.min(offset, snapshot.size());
+            int to = (int) Math.min((long) from + limit, snapshot.size());
+            return new ArrayList<>(snapshot.subList(from, to));
+        }
+        return page(sort, null, offset, limit);
+    }
+
+    /**
+     * Keyset read: the first limit products that sort strictly after the
+     * given one. Seeks into the order's index, so a page costs
+     * O(limit + log n) once the index exists.
+     */
+    public List<Product> getProductsAfter(Product after, int limit, ProductSort sort) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        return page(sort == null || sort == ProductSort.CATALOG ? ProductSort.ID : sort, after, 0, limit);
+    }
+
+    // CATALOG cursors walk the snapshot current when they are created
+    public ProductCursor cursor(ProductSort sort, int pageSize) {
+        return new ProductCursor(this, sort, pageSize);
+    }
+
+    private List<Product> page(ProductSort sort, Product after, int offset, int limit) {
+        while (true) {
+            List<Product> page = read(() -> {
+                TreeSet<Product> index = sortedIndexes.get(sort);
+                if (index == null) {
+                    return null;
+                }
+                Iterator<Product> iterator = (after == null ? index : index.tailSet(after, false)).iterator();
+                for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                    iterator.next();
+                }
+                List<Product> result = new ArrayList<>(Math.min(limit, 1024));
+                while (result.size() < limit && iterator.hasNext()) {
+                    result.add(iterator.next());
+                }
+                return result;
+            });
+            if (page != null) {
+                return page;
+            }
+            long stamp = lock.writeLock();
+            try {
+                if (!sortedIndexes.containsKey(sort)) {
+                    TreeSet<Product> index = new TreeSet<>(sort.comparator());
+                    current.forEach(index::add);
+                    sortedIndexes.put(sort, index);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    // Caller holds the lock, so the published snapshot is up to date
+    private ProductSnapshot liveList() {
+        return current;
+    }
+
+    private Stream<Product> liveProducts() {
+        return current.stream();
+    }
+
+    // Makes the writes since the last publish visible to snapshot readers
+    private void publish() {
+        if (dirty) {
+            current = products.publish(current.getVersion() + 1);
+            dirty = false;
+        }
     }
 
     public List<Product> filterProducts(String searchTerm) {
+        return filterProducts(searchTerm, null);
+    }
+
+    // Substring search over name, description and category, optionally limited
+    // to one category. Terms of three or more characters only check the products
+    // that contain every trigram of the term.
+    public List<Product> filterProducts(String searchTerm, String category) {
+        return read(() -> search(searchTerm, category));
+    }
+
+    private List<Product> search(String searchTerm, String category) {
+        boolean anyCategory = category == null || category.isEmpty();
+        int code = anyCategory ? -1 : CategoryDictionary.find(category);
         if (searchTerm == null || searchTerm.isEmpty()) {
-            return getAllProducts();
+            return anyCategory ? liveList() : productsFor(idsByCategory.get(code));
+        }
+
+        String lowerSearchTerm = searchTerm.toLowerCase(Locale.ROOT);
+        if (!anyCategory && !idsByCategory.containsKey(code)) {
+            return new ArrayList<>();
         }
 
-        String lowerSearchTerm = searchTerm.toLowerCase();
-        return products.stream()
-            .filter(p -> 
-                p.getName().toLowerCase().contains(lowerSearchTerm) ||
-                p.getDescription().toLowerCase().contains(lowerSearchTerm) ||
-                p.getCategory().toLowerCase().contains(lowerSearchTerm))
-            .collect(Collectors.toList());
+        int[] candidates = textIndex.candidates(lowerSearchTerm);
+        if (candidates == null) {
+            return liveProducts()
+                .filter(p -> anyCategory || p.getCategoryCode() == code)
+                .filter(p -> matches(p, lowerSearchTerm))
+                .collect(Collectors.toList());
+        }
+
+        int kept = 0;
+        for (int id : candidates) {
+            int slot = slotById.get(id, -1);
+            Product product = products.get(slot);
+            if ((anyCategory || product.getCategoryCode() == code) && matches(product, lowerSearchTerm)) {
+                candidates[kept++] = slot;
+            }
+        }
+        int[] slots = Arrays.copyOf(candidates, kept);
+        Arrays.sort(slots);
+        List<Product> result = new ArrayList<>(kept);
+        for (int slot : slots) {
+            result.add(products.get(slot));
+        }
+        return result;
+    }
+
+    // Whether filterProducts(searchTerm, category) would include the product
+    public static boolean matchesFilter(Product product, String searchTerm, String category) {
+        if (category != null && !category.isEmpty() && product.getCategoryCode() != CategoryDictionary.find(category)) {
+            return false;
+        }
+        return searchTerm == null || searchTerm.isEmpty() || matches(product, searchTerm.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean matches(Product product, String lowerSearchTerm) {
+        return contains(product.getName(), lowerSearchTerm) ||
+            contains(product.getDescription(), lowerSearchTerm) ||
+            contains(product.getCategory(), lowerSearchTerm);
+    }
+
+    private static boolean contains(String text, String lowerSearchTerm) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(lowerSearchTerm);
     }
 
     public List<Product> getProductsByCategory(String category) {
@@ -37,149 +344,683 @@ public class ProductDAO {
             return getAllProducts();
         }
 
-        return products.stream()
-            .filter(p -> p.getCategory().equalsIgnoreCase(category))
-            .collect(Collectors.toList());
+        return read(() -> productsFor(idsByCategory.get(CategoryDictionary.find(category))));
     }
 
+    // Sorted; the empty category is left out
     public List<String> getAllCategories() {
-        return products.stream()
-            .map(Product::getCategory)
-            .filter(c -> c != null && !c.isEmpty())
-            .distinct()
-            .sorted()
-            .collect(Collectors.toList());
+        return read(() -> {
+            List<String> result = new ArrayList<>();
+            for (int code = 1; code < categoryCounts.length; code++) {
+                if (categoryCounts[code] > 0) {
+                    result.add(CategoryDictionary.name(code));
+                }
+            }
+            Collections.sort(result);
+            return result;
+        });
     }
 
     public Product getProductById(int id) {
-        for (Product product : products) {
-            if (product.getId() == id) {
-                return product;
-            }
-        }
-        return null;
+        return readOptimistic(() -> {
+            ProductSnapshot snapshot = current;
+            int slot = slotById.get(id, -1);
+            return slot >= 0 ? snapshot.slot(slot) : null;
+        });
     }
 
+    // Products handed out by the DAO must be treated as read-only; to change
+    // one, pass a modified copy to updateProduct
     public void addProduct(Product product) {
-        if (product.getId() == 0) {
-            product.setId(nextId++);
+        long stamp = lock.writeLock();
+        try {
+            if (product.getId() == 0) {
+                product.setId(nextId++);
+            } else if (product.getId() >= nextId) {
+                nextId = product.getId() + 1;
+            }
+            Product stored = new Product(product);
+            store(stored);
+            persistPut(stored);
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        products.add(product);
-        saveData();
     }
 
     public void updateProduct(Product product) {
-        for (int i = 0; i < products.size(); i++) {
-            if (products.get(i).getId() == product.getId()) {
-                products.set(i, product);
-                saveData();
-                return;
+        long stamp = lock.writeLock();
+        try {
+            if (slotById.containsKey(product.getId())) {
+                Product stored = new Product(product);
+                store(stored);
+                persistPut(stored);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds or replaces each product by id in one step, and persists the whole
+     * batch as a single write. Products with id 0 get a new id. Returns how
+     * many were inserted; the rest replaced an existing product, including
+     * one inserted earlier in the same batch.
+     */
+    public int bulkUpsert(List<Product> batch) {
+        return bulkUpsert(batch, null);
+    }
+
+    /**
+     * As bulkUpsert(batch), but before an incoming product replaces a stored
+     * one, keepFromStored is called with (stored, incoming) under the write
+     * lock, so that fields the caller did not supply can be carried over.
+     */
+    public int bulkUpsert(List<Product> batch, BiConsumer<Product, Product> keepFromStored) {
+        long stamp = lock.writeLock();
+        try {
+            Map<Integer, Product> stored = new LinkedHashMap<>();
+            int inserted = 0;
+            for (Product product : batch) {
+                if (product.getId() == 0) {
+                    product.setId(nextId++);
+                } else if (product.getId() >= nextId) {
+                    nextId = product.getId() + 1;
+                }
+                int slot = slotById.get(product.getId(), -1);
+                if (slot < 0) {
+                    inserted++;
+                } else if (keepFromStored != null) {
+                    keepFromStored.accept(products.get(slot), product);
+                }
+                Product copy = new Product(product);
+                store(copy);
+                stored.put(copy.getId(), copy);
             }
+            persistPuts(stored.values());
+            return inserted;
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
 
     public void deleteProduct(int id) {
-        products.removeIf(product -> product.getId() == id);
-        saveData();
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotById.remove(id, -1);
+            if (slot < 0) {
+                return;
+            }
+            unindex(products.get(slot));
+            products.set(slot, null);
+            dirty = true;
+            int holes = products.slotCount() - products.size();
+            if (holes > 16 && holes * 4 > products.slotCount()) {
+                compactSlots();
+            }
+            persistDelete(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    public List<Product> getLowStockProducts(int threshold) {
-        return products.stream()
-            .filter(p -> p.getQuantity() <= threshold)
-            .collect(Collectors.toList());
+    // Checks and applies a sale in one step, so two tills can never both sell the last unit
+    public StockResult sell(int id, int quantity) {
+        if (quantity <= 0) {
+            return StockResult.INVALID_QUANTITY;
+        }
+        // Obvious rejections are answered without queueing behind writers
+        StockResult precheck = readOptimistic(() -> checkSale(id, quantity));
+        if (precheck != StockResult.OK) {
+            return precheck;
+        }
+        long stamp = lock.writeLock();
+        try {
+            StockResult result = checkSale(id, quantity);
+            if (result == StockResult.OK) {
+                Product updated = new Product(products.get(slotById.get(id, -1)));
+                updated.setQuantity(updated.getQuantity() - quantity);
+                updated.setSold(updated.getSold() + quantity);
+                store(updated);
+                persistPut(updated);
+            }
+            return result;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    public Map<String, Double> getCategorySalesData() {
-        Map<String, Double> categorySales = new HashMap<>();
+    /**
+     * Sells every line of an order or none of them. Lines for the same product
+     * are checked against their combined quantity, and the whole order is
+     * persisted as a single journal write.
+     */
+    public OrderResult placeOrder(List<OrderLine> lines) {
+        long stamp = lock.writeLock();
+        try {
+            List<OrderResult.LineFailure> failures = new ArrayList<>();
+            Map<Integer, Product> updated = new LinkedHashMap<>();
+            for (int i = 0; i < lines.size(); i++) {
+                OrderLine line = lines.get(i);
+                if (line.getQuantity() <= 0) {
+                    failures.add(new OrderResult.LineFailure(i, line, StockResult.INVALID_QUANTITY));
+                    continue;
+                }
+                Product product = updated.get(line.getProductId());
+                if (product == null) {
+                    int slot = slotById.get(line.getProductId(), -1);
+                    if (slot < 0) {
+                        failures.add(new OrderResult.LineFailure(i, line, StockResult.UNKNOWN_PRODUCT));
+                        continue;
+                    }
+                    product = new Product(products.get(slot));
+                }
+                if (product.getQuantity() < line.getQuantity()) {
+                    failures.add(new OrderResult.LineFailure(i, line, StockResult.INSUFFICIENT_STOCK));
+                    continue;
+                }
+                if (product.getSold() > Integer.MAX_VALUE - line.getQuantity()) {
+                    failures.add(new OrderResult.LineFailure(i, line, StockResult.INVALID_QUANTITY));
+                    continue;
+                }
+                product.setQuantity(product.getQuantity() - line.getQuantity());
+                product.setSold(product.getSold() + line.getQuantity());
+                updated.put(product.getId(), product);
+            }
+
+            if (failures.isEmpty()) {
+                for (Product product : updated.values()) {
+                    store(product);
+                }
+                persistPuts(updated.values());
+            }
+            return new OrderResult(failures);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public StockResult restock(int id, int quantity) {
+        if (quantity <= 0) {
+            return StockResult.INVALID_QUANTITY;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotById.get(id, -1);
+            if (slot < 0) {
+                return StockResult.UNKNOWN_PRODUCT;
+            }
+            Product updated = new Product(products.get(slot));
+            if (updated.getQuantity() > Integer.MAX_VALUE - quantity) {
+                return StockResult.INVALID_QUANTITY;
+            }
+            updated.setQuantity(updated.getQuantity() + quantity);
+            store(updated);
+            persistPut(updated);
+            return StockResult.OK;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private StockResult checkSale(int id, int quantity) {
+        ProductSnapshot snapshot = current;
+        int slot = slotById.get(id, -1);
+        if (slot < 0) {
+            return StockResult.UNKNOWN_PRODUCT;
+        }
+        Product product = snapshot.slot(slot);
+        if (product.getQuantity() < quantity) {
+            return StockResult.INSUFFICIENT_STOCK;
+        }
+        if (product.getSold() > Integer.MAX_VALUE - quantity) {
+            return StockResult.INVALID_QUANTITY;
+        }
+        return StockResult.OK;
+    }
+
+    private void store(Product product) {
+        int slot = slotById.get(product.getId(), -1);
+        if (slot >= 0) {
+            unindex(products.get(slot));
+            products.set(slot, product);
+        } else {
+            slot = products.append(product);
+            slotById.put(product.getId(), slot);
+        }
+        index(product);
+        dirty = true;
+    }
+
+    private void compactSlots() {
+        ProductVector old = products;
+        products = new ProductVector();
+        slotById.clear();
+        for (int i = 0; i < old.slotCount(); i++) {
+            Product product = old.get(i);
+            if (product != null) {
+                int slot = products.append(product);
+                slotById.put(product.getId(), slot);
+            }
+        }
+        dirty = true;
+    }
+
+    private void index(Product product) {
+        int category = product.getCategoryCode();
+        idsByCategory.computeIfAbsent(category, k -> new IntHashSet()).add(product.getId());
+        if (category >= categoryCounts.length) {
+            categoryCounts = Arrays.copyOf(categoryCounts, Math.max(category + 1, categoryCounts.length * 2));
+        }
+        categoryCounts[category]++;
+        idsBySupplier.computeIfAbsent(product.getSupplierId(), k -> new IntHashSet()).add(product.getId());
+        textIndex.add(product.getId(), product.getName(), product.getDescription(), product.getCategory());
+        aggregates.add(product);
+        byReorderSlack.add(product);
+        for (TreeSet<Product> index : sortedIndexes.values()) {
+            index.add(product);
+        }
+    }
+
+    private void unindex(Product product) {
+        int category = product.getCategoryCode();
+        removePosting(idsByCategory, category, product.getId());
+        categoryCounts[category]--;
+        removePosting(idsBySupplier, product.getSupplierId(), product.getId());
+        textIndex.remove(product.getId(), product.getName(), product.getDescription(), product.getCategory());
+        aggregates.remove(product);
+        byReorderSlack.remove(product);
+        for (TreeSet<Product> index : sortedIndexes.values()) {
+            index.remove(product);
+        }
+    }
 
-        for (Product product : products) {
-            String category = product.getCategory();
-            if (category == null || category.isEmpty()) {
-                category = "Uncategorized";
+    private static <K> void removePosting(Map<K, IntHashSet> index, K key, int id) {
+        IntHashSet ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
             }
+        }
+    }
 
-            double salesValue = product.getSold() * product.getPrice();
-            categorySales.put(category, categorySales.getOrDefault(category, 0.0) + salesValue);
+    // Resolves an id posting list to products, in catalog order
+    private List<Product> productsFor(IntHashSet ids) {
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        int[] slots = ids.toArray();
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = slotById.get(slots[i], -1);
+        }
+        Arrays.sort(slots);
+        List<Product> result = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            result.add(products.get(slot));
         }
+        return result;
+    }
 
-        return categorySales;
+    public List<Product> getProductsAtReorderPoint() {
+        return read(() -> {
+            List<Product> result = new ArrayList<>();
+            // Ordered by slack, so the products at their reorder point come first
+            for (Product product : byReorderSlack) {
+                if (!product.isAtReorderPoint()) {
+                    break;
+                }
+                result.add(product);
+            }
+            return result;
+        });
+    }
+
+    private static long reorderSlack(Product product) {
+        return (long) product.getQuantity() - product.getReorderLevel();
+    }
+
+    public List<Product> getLowStockProducts(int threshold) {
+        return read(() -> {
+            List<Product> result = new ArrayList<>();
+            for (int slot = 0; slot < products.slotCount(); slot++) {
+                Product product = products.get(slot);
+                if (product != null && product.getQuantity() <= threshold) {
+                    result.add(product);
+                }
+            }
+            return result;
+        });
+    }
+
+    public Map<String, Double> getCategorySalesData() {
+        Map<String, Double> result = new HashMap<>();
+        getCategorySalesCents().forEach((category, cents) -> result.put(category, Money.toDouble(cents)));
+        return result;
+    }
+
+    public Map<String, Long> getCategorySalesCents() {
+        return read(() -> {
+            checkAggregates();
+            return aggregates.getCategorySalesCents();
+        });
     }
 
     public Map<Integer, List<Product>> getProductsBySupplier() {
-        return products.stream()
-            .filter(p -> p.getSupplierId() > 0)
-            .collect(Collectors.groupingBy(Product::getSupplierId));
+        return read(() -> {
+            Map<Integer, List<Product>> result = new HashMap<>();
+            for (Map.Entry<Integer, IntHashSet> entry : idsBySupplier.entrySet()) {
+                if (entry.getKey() > 0) {
+                    result.put(entry.getKey(), productsFor(entry.getValue()));
+                }
+            }
+            return result;
+        });
+    }
+
+    public List<Product> getProductsBySupplier(int supplierId) {
+        return read(() -> productsFor(idsBySupplier.get(supplierId)));
     }
 
     public double getTotalInventoryValue() {
-        return products.stream()
-            .mapToDouble(p -> p.getQuantity() * p.getPrice())
-            .sum();
+        return Money.toDouble(getTotalInventoryValueCents());
+    }
+
+    public long getTotalInventoryValueCents() {
+        if (consistencyCheck) {
+            return read(() -> {
+                checkAggregates();
+                return aggregates.getTotalValueCents();
+            });
+        }
+        return readOptimistic(aggregates::getTotalValueCents);
     }
 
-    @SuppressWarnings("unchecked")
     private void loadData() {
-        File file = new File(DATA_FILE);
+        File file = dataFile;
+        Map<Integer, Product> loaded = new LinkedHashMap<>();
+        boolean legacyFormat = false;
         if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                products = (List<Product>) ois.readObject();
-
-                // Find the next available ID
-                nextId = 1;
-                for (Product product : products) {
-                    if (product.getId() >= nextId) {
-                        nextId = product.getId() + 1;
-                    }
+            try {
+                legacyFormat = BinaryIO.isJavaSerialized(file);
+                for (Product product : ProductCodec.readAll(file)) {
+                    loaded.put(product.getId(), product);
                 }
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Error loading data: " + e.getMessage());
-                products = new ArrayList<>();
+            } catch (IOException e) {
+                throw unreadable(file, e);
             }
-        } else {
-            products = new ArrayList<>();
+        }
+
+        boolean needsSnapshot = false;
+        if (journal != null) {
+            try {
+                needsSnapshot = journal.replay(loaded);
+            } catch (IOException e) {
+                throw unreadable(journal.getFile(), e);
+            }
+        }
+
+        setProducts(loaded.values());
+
+        if (legacyFormat) {
+            // One-time migration: keep the serialized file and rewrite it in the binary format
+            File legacyFile = new File(dataFile.getPath() + ".legacy");
+            if (!legacyFile.exists() && !file.renameTo(legacyFile)) {
+                System.err.println("Could not keep " + file.getName() + " as " + legacyFile.getName());
+            }
+            saveData();
+        } else if (needsSnapshot) {
+            saveData();
         }
     }
 
-    private void saveData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(products);
+    // Starting empty would overwrite the damaged file with an empty catalog on
+    // the first save, so the file is left alone and the DAO refuses to start
+    private static UncheckedIOException unreadable(File file, IOException e) {
+        return new UncheckedIOException("Could not read " + file.getName() + ": " + e.getMessage(), e);
+    }
+
+    private void setProducts(Collection<Product> newProducts) {
+        products = new ProductVector();
+        slotById.clear();
+        dirty = true;
+        idsByCategory.clear();
+        idsBySupplier.clear();
+        Arrays.fill(categoryCounts, 0);
+        textIndex.clear();
+        aggregates.clear();
+        byReorderSlack.clear();
+        // Rebuilt when next paged through
+        sortedIndexes.clear();
+        nextId = 1;
+        for (Product product : newProducts) {
+            store(product);
+            if (product.getId() >= nextId) {
+                nextId = product.getId() + 1;
+            }
+        }
+        publish();
+    }
+
+    // Every persist call runs under the write lock after the change is stored,
+    // and queues it for the scheduler's next flush
+    private void persistPut(Product product) {
+        publish();
+        synchronized (pendingLock) {
+            pendingDeletes.remove(product.getId());
+            pendingPuts.put(product.getId(), product);
+        }
+        persistence.changed(1);
+    }
+
+    private void persistPuts(Collection<Product> batch) {
+        publish();
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Queued together, so the batch reaches the journal as one record
+        synchronized (pendingLock) {
+            for (Product product : batch) {
+                pendingDeletes.remove(product.getId());
+                pendingPuts.put(product.getId(), product);
+            }
+        }
+        persistence.changed(batch.size());
+    }
+
+    private void persistDelete(int id) {
+        publish();
+        synchronized (pendingLock) {
+            pendingPuts.remove(id);
+            pendingDeletes.add(id);
+        }
+        persistence.changed(1);
+    }
+
+    // Called by the scheduler, usually on its own thread
+    private void flushPending() {
+        synchronized (journalLock) {
+            List<Product> puts;
+            int[] deletes;
+            synchronized (pendingLock) {
+                puts = new ArrayList<>(pendingPuts.values());
+                deletes = pendingDeletes.toArray();
+                pendingPuts.clear();
+                pendingDeletes.clear();
+            }
+            if (puts.isEmpty() && deletes.length == 0) {
+                return;
+            }
+            if (journal == null) {
+                writeFullSnapshot();
+                return;
+            }
+            try {
+                if (puts.size() == 1) {
+                    journal.appendPut(puts.get(0));
+                } else if (!puts.isEmpty()) {
+                    journal.appendPuts(puts);
+                }
+                for (int id : deletes) {
+                    journal.appendDelete(id);
+                }
+                journal.sync();
+            } catch (IOException e) {
+                System.err.println("Error writing journal: " + e.getMessage());
+                writeFullSnapshot();
+                return;
+            }
+            maybeCompact();
+        }
+    }
+
+    private void maybeCompact() {
+        if (journal.size() < compactionThreshold || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        // The snapshot only needs the catalog as of the roll; later changes land in the new log
+        ProductSnapshot snapshot = liveList();
+        try {
+            journal.roll();
         } catch (IOException e) {
-            System.err.println("Error saving data: " + e.getMessage());
+            System.err.println("Error rolling journal: " + e.getMessage());
+            compacting.set(false);
+            return;
+        }
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "product-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long generation;
+        synchronized (snapshotLock) {
+            generation = snapshotGeneration;
         }
+        compactor.execute(() -> {
+            try {
+                synchronized (snapshotLock) {
+                    // A full save since the roll already covers this snapshot
+                    if (generation == snapshotGeneration) {
+                        ProductCodec.writeAll(snapshot, dataFile);
+                        snapshotGeneration++;
+                        journal.compactionFinished();
+                    }
+                }
+            } catch (IOException e) {
+                // The rolled log stays on disk and is replayed on the next start
+                System.err.println("Error compacting journal: " + e.getMessage());
+            } finally {
+                compacting.set(false);
+            }
+        });
     }
 
-    public void backup(String filename) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(products);
+    private void saveData() {
+        publish();
+        writeFullSnapshot();
+    }
+
+    // Writes the published catalog, which covers the journal and every queued
+    // change; changes are published before they are queued
+    private void writeFullSnapshot() {
+        synchronized (journalLock) {
+            synchronized (pendingLock) {
+                pendingPuts.clear();
+                pendingDeletes.clear();
+            }
+            try {
+                synchronized (snapshotLock) {
+                    ProductCodec.writeAll(liveList(), dataFile);
+                    snapshotGeneration++;
+                    if (journal != null) {
+                        journal.reset();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error saving data: " + e.getMessage());
+            }
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public void restore(String filename) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            products = (List<Product>) ois.readObject();
+    public PersistenceScheduler getPersistence() {
+        return persistence;
+    }
+
+    /** Writes every queued change to disk before returning. */
+    public void flush() {
+        persistence.flush();
+    }
 
-            // Update nextId
-            nextId = 1;
-            for (Product product : products) {
-                if (product.getId() >= nextId) {
-                    nextId = product.getId() + 1;
+    /**
+     * Flushes queued changes, waits for a running compaction and stops the
+     * background threads.
+     */
+    public void close() {
+        persistence.close();
+        synchronized (journalLock) {
+            if (compactor != null) {
+                compactor.shutdown();
+                try {
+                    compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
             }
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Error closing journal: " + e.getMessage());
+            }
+        }
+    }
+
+    public void backup(String filename) throws IOException {
+        backup(filename, new JobContext());
+    }
+
+    // A cancelled backup leaves any earlier file of that name in place
+    public void backup(String filename, JobContext context) throws IOException {
+        ProductCodec.writeAll(snapshot(), new File(filename), context);
+    }
+
+    // Backups taken before the binary format are still accepted
+    public void restore(String filename) throws IOException {
+        restore(filename, new JobContext());
+    }
+
+    // Can be cancelled until the backup has been read; the catalog is untouched until then
+    public void restore(String filename, JobContext context) throws IOException {
+        File file = new File(filename);
+        context.setTotalBytes(file.length());
+        List<Product> restored = ProductCodec.readAll(file);
+        context.addRows(restored.size());
+        context.addBytes(file.length());
+        context.checkCancelled();
+        long stamp = lock.writeLock();
+        try {
+            setProducts(restored);
 
             // Save to the main data file
             saveData();
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
+
     public Product getTopSellingProduct() {
-        if (products.isEmpty()) return null;
+        return read(() -> {
+            checkAggregates();
+            return aggregates.getTopSeller();
+        });
+    }
 
-        Product topSelling = products.get(0);
-        for (Product product : products) {
-            if (product.getSold() > topSelling.getSold()) {
-                topSelling = product;
-            }
-        }
-        return topSelling;
+    public List<Product> getTopSellingProducts(int limit) {
+        return read(() -> {
+            checkAggregates();
+            return aggregates.getTopSellers(limit);
+        });
     }
 }
\ No newline at end of file
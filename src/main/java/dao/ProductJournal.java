@@ -0,0 +1,290 @@
+package dao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import models.Product;
+import utils.BinaryIO;
+
+/**
+ * Append-only log of product mutations. Every record carries the full state of
+ * the product it touches, so replaying a log on top of any snapshot taken while
+ * the log was being written is idempotent.
+ *
+ * A log starts with a file header, and each record is framed by its length,
+ * the length's complement and a CRC32C of the record. Only a torn last record,
+ * left by a crash while appending, is dropped on replay; damage anywhere else
+ * fails the replay, since skipping a record would lose the changes in it and
+ * appending after it would bury later ones.
+ */
+class ProductJournal {
+    private static final char RECORD_TYPE = 'J';
+    private static final int VERSION = 1;
+    private static final int FRAME_SIZE = 3 * Integer.BYTES;
+
+    // Followed by a ProductCodec block of one or more products
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private final File logFile;
+    private final File compactingFile;
+    private DataOutputStream out;
+    private FileOutputStream fileOut;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private long baseSize;
+    private long size;
+
+    ProductJournal(String logFileName) {
+        this.logFile = new File(logFileName);
+        this.compactingFile = new File(logFileName + ".compacting");
+    }
+
+    /**
+     * Applies the log left by an unfinished compaction, then the live log.
+     * Returns true when the caller should fold everything into a fresh
+     * snapshot before appending, which is after an unfinished compaction.
+     * Throws if a log is damaged anywhere but its last record.
+     */
+    boolean replay(Map<Integer, Product> products) throws IOException {
+        boolean interrupted = compactingFile.exists();
+        if (interrupted) {
+            replayFile(compactingFile, products);
+        }
+        replayFile(logFile, products);
+        return interrupted;
+    }
+
+    private void replayFile(File file, Map<Integer, Product> products) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            if (fileSize < BinaryIO.HEADER_SIZE) {
+                truncateTornRecord(channel, file, 0);
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(BinaryIO.HEADER_SIZE);
+            readFully(channel, header, 0);
+            int version = BinaryIO.readHeader(new DataInputStream(new ByteArrayInputStream(header.array())), RECORD_TYPE);
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal format version " + version + " in " + file.getName());
+            }
+
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+            long position = BinaryIO.HEADER_SIZE;
+            while (position < fileSize) {
+                if (fileSize - position < FRAME_SIZE) {
+                    truncateTornRecord(channel, file, position);
+                    break;
+                }
+                readFully(channel, frame.clear(), position);
+                int length = frame.getInt(0);
+                if (length <= 0 || frame.getInt(Integer.BYTES) != ~length) {
+                    // A file extended by the crash but never written reads back as zeros
+                    if (isZeroFrom(channel, position, fileSize)) {
+                        truncateTornRecord(channel, file, position);
+                        break;
+                    }
+                    throw new IOException(file.getName() + " has a damaged record at offset " + position);
+                }
+                long end = position + FRAME_SIZE + length;
+                if (end > fileSize) {
+                    truncateTornRecord(channel, file, position);
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                readFully(channel, ByteBuffer.wrap(bytes), position + FRAME_SIZE);
+                CRC32C crc = new CRC32C();
+                crc.update(bytes, 0, bytes.length);
+                if ((int) crc.getValue() != frame.getInt(2 * Integer.BYTES)) {
+                    if (end == fileSize) {
+                        truncateTornRecord(channel, file, position);
+                        break;
+                    }
+                    throw new IOException(file.getName() + " has a record failing its checksum at offset " + position);
+                }
+                try {
+                    applyRecord(new DataInputStream(new ByteArrayInputStream(bytes)), products, file);
+                } catch (EOFException e) {
+                    throw new IOException(file.getName() + " has a malformed record at offset " + position);
+                }
+                position = end;
+            }
+        }
+    }
+
+    private static void truncateTornRecord(FileChannel channel, File file, long length) throws IOException {
+        System.err.println("Discarding incomplete journal record in " + file.getName());
+        channel.truncate(length);
+        channel.force(true);
+    }
+
+    private static boolean isZeroFrom(FileChannel channel, long position, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < fileSize) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), fileSize - position));
+            readFully(channel, buffer, position);
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            position += buffer.limit();
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void applyRecord(DataInputStream in, Map<Integer, Product> products, File file) throws IOException {
+        int op = in.readUnsignedByte();
+        if (op == OP_PUT) {
+            // Read the whole block before applying any of it, so a malformed batch is refused as one
+            for (Product product : ProductCodec.readBlock(in)) {
+                products.put(product.getId(), product);
+            }
+        } else if (op == OP_DELETE) {
+            products.remove(in.readInt());
+        } else {
+            throw new IOException("Unknown journal record type " + op + " in " + file.getName());
+        }
+    }
+
+    void appendPut(Product product) throws IOException {
+        record.reset();
+        recordOut.writeByte(OP_PUT);
+        ProductCodec.writeBlock(recordOut, Collections.singletonList(product));
+        appendRecord();
+    }
+
+    // Written as one record, so replay applies all of the batch or none of it
+    void appendPuts(Collection<Product> products) throws IOException {
+        record.reset();
+        recordOut.writeByte(OP_PUT);
+        ProductCodec.writeBlock(recordOut, products);
+        appendRecord();
+    }
+
+    void appendDelete(int id) throws IOException {
+        record.reset();
+        recordOut.writeByte(OP_DELETE);
+        recordOut.writeInt(id);
+        appendRecord();
+    }
+
+    private void appendRecord() throws IOException {
+        byte[] bytes = record.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length);
+        DataOutputStream stream = open();
+        stream.writeInt(bytes.length);
+        stream.writeInt(~bytes.length);
+        stream.writeInt((int) crc.getValue());
+        stream.write(bytes);
+        stream.flush();
+        size = baseSize + stream.size();
+    }
+
+    File getFile() {
+        return logFile;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Moves the live log aside so that a snapshot can be written from the
+     * current state while new mutations keep appending to a fresh log.
+     */
+    void roll() throws IOException {
+        close();
+        if (!logFile.exists()) {
+            size = 0;
+            return;
+        }
+        if (compactingFile.exists()) {
+            // A compaction failed and no snapshot covers its rolled log yet, so
+            // the live log is added to it instead of replacing it. Until the
+            // live log is deleted a crash replays it on top, which is harmless
+            appendRecords(logFile, compactingFile);
+            if (!logFile.delete()) {
+                throw new IOException("Could not roll journal " + logFile.getName());
+            }
+        } else if (!logFile.renameTo(compactingFile)) {
+            throw new IOException("Could not roll journal " + logFile.getName());
+        }
+        size = 0;
+    }
+
+    // Copies the records after the file header of one log onto the end of another
+    private static void appendRecords(File from, File to) throws IOException {
+        try (FileChannel source = FileChannel.open(from.toPath(), StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(to.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = Math.min(BinaryIO.HEADER_SIZE, source.size());
+            while (position < source.size()) {
+                position += source.transferTo(position, source.size() - position, target);
+            }
+            target.force(true);
+        }
+    }
+
+    /** Called once the snapshot covering the rolled log is safely on disk. */
+    void compactionFinished() {
+        if (compactingFile.exists() && !compactingFile.delete()) {
+            System.err.println("Could not delete " + compactingFile.getName());
+        }
+    }
+
+    /** Discards all log records; the caller has just written a full snapshot. */
+    void reset() throws IOException {
+        close();
+        compactionFinished();
+        if (logFile.exists() && !logFile.delete()) {
+            throw new IOException("Could not truncate journal " + logFile.getName());
+        }
+        size = 0;
+    }
+
+    // Makes every appended record durable
+    void sync() throws IOException {
+        if (out != null) {
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    private DataOutputStream open() throws IOException {
+        if (out == null) {
+            baseSize = logFile.length();
+            size = baseSize;
+            fileOut = new FileOutputStream(logFile, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            if (baseSize == 0) {
+                BinaryIO.writeHeader(out, RECORD_TYPE, VERSION);
+            }
+        }
+        return out;
+    }
+}
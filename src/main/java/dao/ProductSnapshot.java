@@ -0,0 +1,136 @@
+package dao;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import models.Product;
+
+/**
+ * Immutable point-in-time view of the catalog, in catalog order. Taking one is
+ * O(1): it shares its chunks with the DAO, which copies a chunk before
+ * changing it once a snapshot has been published. Products in a snapshot are
+ * never modified by the DAO.
+ */
+public final class ProductSnapshot extends AbstractList<Product> implements RandomAccess {
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Product[][] chunks;
+    private final int[] chunkLive;
+    private final int slotCount;
+    private final int size;
+    private final long version;
+
+    // Live products before each chunk, built on the first positional lookup
+    // when deletes have left holes
+    private int[] liveBefore;
+
+    ProductSnapshot(Product[][] chunks, int[] chunkLive, int slotCount, int size, long version) {
+        this.chunks = chunks;
+        this.chunkLive = chunkLive;
+        this.slotCount = slotCount;
+        this.size = size;
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Product get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == slotCount) {
+            return slot(index);
+        }
+        int[] before = liveBefore;
+        if (before == null) {
+            before = new int[chunkCount() + 1];
+            for (int c = 0; c < chunkCount(); c++) {
+                before[c + 1] = before[c] + chunkLive[c];
+            }
+            liveBefore = before;
+        }
+        int low = 0;
+        int high = chunkCount() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (before[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int remaining = index - before[low];
+        for (Product product : chunks[low]) {
+            if (product != null && remaining-- == 0) {
+                return product;
+            }
+        }
+        throw new IllegalStateException("Snapshot chunk counts are inconsistent");
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Iterator<Product>() {
+            private int nextSlot = advance(0);
+
+            private int advance(int from) {
+                while (from < slotCount && slot(from) == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextSlot < slotCount;
+            }
+
+            @Override
+            public Product next() {
+                if (nextSlot >= slotCount) {
+                    throw new NoSuchElementException();
+                }
+                Product product = slot(nextSlot);
+                nextSlot = advance(nextSlot + 1);
+                return product;
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super Product> action) {
+        for (int c = 0; c < chunkCount(); c++) {
+            Product[] chunk = chunks[c];
+            int end = Math.min(CHUNK_SIZE, slotCount - (c << CHUNK_SHIFT));
+            for (int i = 0; i < end; i++) {
+                if (chunk[i] != null) {
+                    action.accept(chunk[i]);
+                }
+            }
+        }
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    Product slot(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+    }
+
+    private int chunkCount() {
+        return (slotCount + CHUNK_MASK) >>> CHUNK_SHIFT;
+    }
+}
@@ -0,0 +1,26 @@
+package dao;
+
+import java.util.Comparator;
+import models.Product;
+
+// Sort orders for paged reads; every order breaks ties by id so that keyset
+// pagination has a strict total order to resume from
+public enum ProductSort {
+    CATALOG(null),
+    ID(Comparator.comparingInt(Product::getId)),
+    NAME(Comparator.comparing(Product::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))),
+    PRICE(Comparator.comparingLong(Product::getPriceCents)),
+    QUANTITY(Comparator.comparingInt(Product::getQuantity)),
+    SOLD(Comparator.comparingInt(Product::getSold));
+
+    private final Comparator<Product> comparator;
+
+    ProductSort(Comparator<Product> key) {
+        this.comparator = key == null ? null : key.thenComparingInt(Product::getId);
+    }
+
+    // Null for CATALOG, which is the order products were added in
+    Comparator<Product> comparator() {
+        return comparator;
+    }
+}
@@ -0,0 +1,9 @@
+package dao;
+
+/** How ProductDAO keeps the catalog on disk. */
+public enum ProductStorage {
+    /** products.dat rewritten on every change */
+    SNAPSHOT,
+    /** products.dat plus an append-only change log, folded in the background */
+    JOURNAL
+}
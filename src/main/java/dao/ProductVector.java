@@ -0,0 +1,88 @@
+package dao;
+
+import java.util.Arrays;
+import models.Product;
+
+import static dao.ProductSnapshot.CHUNK_MASK;
+import static dao.ProductSnapshot.CHUNK_SHIFT;
+import static dao.ProductSnapshot.CHUNK_SIZE;
+
+/**
+ * Writer side of the catalog: a slot array split into fixed-size chunks.
+ * Chunks and the chunk directory are shared with the last published
+ * ProductSnapshot and copied on first write afterwards, so a batch of writes
+ * between two publishes copies each touched chunk at most once.
+ */
+class ProductVector {
+    private Product[][] chunks = new Product[0][];
+    private int[] chunkLive = new int[0];
+    private boolean[] ownedChunks = new boolean[0];
+    private boolean ownsDirectory;
+    private int slotCount;
+    private int size;
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Product get(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+    }
+
+    int append(Product product) {
+        int slot = slotCount;
+        int c = slot >>> CHUNK_SHIFT;
+        if (c == chunks.length) {
+            ownDirectory(c + 1);
+            chunks[c] = new Product[CHUNK_SIZE];
+            ownedChunks[c] = true;
+        }
+        slotCount++;
+        set(slot, product);
+        return slot;
+    }
+
+    void set(int slot, Product product) {
+        int c = slot >>> CHUNK_SHIFT;
+        Product[] chunk = ownChunk(c);
+        int i = slot & CHUNK_MASK;
+        if (chunk[i] == null && product != null) {
+            chunkLive[c]++;
+            size++;
+        } else if (chunk[i] != null && product == null) {
+            chunkLive[c]--;
+            size--;
+        }
+        chunk[i] = product;
+    }
+
+    ProductSnapshot publish(long version) {
+        ProductSnapshot snapshot = new ProductSnapshot(chunks, chunkLive, slotCount, size, version);
+        ownsDirectory = false;
+        Arrays.fill(ownedChunks, false);
+        return snapshot;
+    }
+
+    private Product[] ownChunk(int c) {
+        if (!ownedChunks[c]) {
+            ownDirectory(chunks.length);
+            chunks[c] = chunks[c].clone();
+            ownedChunks[c] = true;
+        }
+        return chunks[c];
+    }
+
+    private void ownDirectory(int length) {
+        if (!ownsDirectory || length > chunks.length) {
+            int capacity = Math.max(length, ownsDirectory ? chunks.length : 0);
+            chunks = Arrays.copyOf(chunks, capacity);
+            chunkLive = Arrays.copyOf(chunkLive, capacity);
+            ownedChunks = Arrays.copyOf(ownedChunks, capacity);
+            ownsDirectory = true;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package dao;
+
+public enum StockResult {
+    OK,
+    INSUFFICIENT_STOCK,
+    UNKNOWN_PRODUCT,
+    INVALID_QUANTITY
+}
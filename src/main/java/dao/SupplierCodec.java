@@ -0,0 +1,76 @@
+package dao;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import models.Supplier;
+import utils.BinaryIO;
+
+/**
+ * Binary record format for suppliers. Version 1 writes the id as a zigzag
+ * varint followed by name, contact person, email, phone and address as
+ * length-prefixed UTF-8.
+ */
+class SupplierCodec {
+    static final char RECORD_TYPE = 'S';
+    static final int VERSION = 1;
+
+    static void writeSupplier(DataOutput out, Supplier supplier) throws IOException {
+        BinaryIO.writeSignedVarInt(out, supplier.getId());
+        BinaryIO.writeString(out, supplier.getName());
+        BinaryIO.writeString(out, supplier.getContactPerson());
+        BinaryIO.writeString(out, supplier.getEmail());
+        BinaryIO.writeString(out, supplier.getPhone());
+        BinaryIO.writeString(out, supplier.getAddress());
+    }
+
+    static Supplier readSupplier(DataInput in, int version) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unsupported supplier format version " + version);
+        }
+        int id = BinaryIO.readSignedVarInt(in);
+        String name = BinaryIO.readString(in);
+        String contactPerson = BinaryIO.readString(in);
+        String email = BinaryIO.readString(in);
+        String phone = BinaryIO.readString(in);
+        String address = BinaryIO.readString(in);
+        return new Supplier(id, name, contactPerson, email, phone, address);
+    }
+
+    // Returns once the file is on disk
+    static void writeAll(Collection<Supplier> suppliers, File file) throws IOException {
+        BinaryIO.writeFile(file, out -> {
+            BinaryIO.writeHeader(out, RECORD_TYPE, VERSION);
+            BinaryIO.writeVarInt(out, suppliers.size());
+            for (Supplier supplier : suppliers) {
+                writeSupplier(out, supplier);
+            }
+        });
+    }
+
+    /** Reads a supplier file in either the binary format or the old serialized form. */
+    static List<Supplier> readAll(File file) throws IOException {
+        if (BinaryIO.isJavaSerialized(file)) {
+            return readLegacy(file);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = BinaryIO.readHeader(in, RECORD_TYPE);
+            int count = BinaryIO.readVarInt(in);
+            List<Supplier> suppliers = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                suppliers.add(readSupplier(in, version));
+            }
+            return suppliers;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Supplier> readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (List<Supplier>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable supplier file " + file.getName() + ": " + e.getMessage());
+        }
+    }
+}
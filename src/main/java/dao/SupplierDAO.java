@@ -4,21 +4,40 @@ package dao;
 import java.io.*;
 import java.util.*;
 import models.Supplier;
+import utils.BinaryIO;
 
+// Methods synchronize on the DAO so that the background flusher sees a
+// consistent list. The scheduler is only called after the monitor is released:
+// a flush takes the scheduler's lock and then this monitor, so holding the
+// monitor while calling it could deadlock against the flusher thread.
 public class SupplierDAO {
     private static final String DATA_FILE = "suppliers.dat";
+    private final File dataFile;
     private List<Supplier> suppliers;
     private int nextId = 1;
+    private final PersistenceScheduler persistence = new PersistenceScheduler("suppliers",
+        PersistenceScheduler.Mode.GROUP_COMMIT, PersistenceScheduler.DEFAULT_INTERVAL_MILLIS, this::writeData);
     
     public SupplierDAO() {
+        this(new File("."));
+    }
+
+    // Keeps suppliers.dat in the given directory. Throws UncheckedIOException
+    // if the file exists but is damaged
+    public SupplierDAO(File directory) {
+        this.dataFile = new File(directory, DATA_FILE);
         loadData();
     }
     
-    public List<Supplier> getAllSuppliers() {
+    public PersistenceScheduler getPersistence() {
+        return persistence;
+    }
+    
+    public synchronized List<Supplier> getAllSuppliers() {
         return new ArrayList<>(suppliers);
     }
     
-    public Supplier getSupplierById(int id) {
+    public synchronized Supplier getSupplierById(int id) {
         return suppliers.stream()
             .filter(supplier -> supplier.getId() == id)
             .findFirst()
@@ -26,31 +45,35 @@ public class SupplierDAO {
     }
     
     public void saveSupplier(Supplier supplier) {
-        if (supplier.getId() == 0) {
-            supplier.setId(nextId++);
-            suppliers.add(supplier);
-        } else {
-            for (int i = 0; i < suppliers.size(); i++) {
-                if (suppliers.get(i).getId() == supplier.getId()) {
-                    suppliers.set(i, supplier);
-                    break;
+        synchronized (this) {
+            if (supplier.getId() == 0) {
+                supplier.setId(nextId++);
+                suppliers.add(supplier);
+            } else {
+                for (int i = 0; i < suppliers.size(); i++) {
+                    if (suppliers.get(i).getId() == supplier.getId()) {
+                        suppliers.set(i, supplier);
+                        break;
+                    }
                 }
             }
         }
-        saveData();
+        persistence.changed(1);
     }
     
     public void deleteSupplier(Supplier supplier) {
-        suppliers.removeIf(p -> p.getId() == supplier.getId());
-        saveData();
+        synchronized (this) {
+            suppliers.removeIf(p -> p.getId() == supplier.getId());
+        }
+        persistence.changed(1);
     }
     
-    @SuppressWarnings("unchecked")
     private void loadData() {
-        File file = new File(DATA_FILE);
+        File file = dataFile;
         if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                suppliers = (List<Supplier>) ois.readObject();
+            try {
+                boolean legacyFormat = BinaryIO.isJavaSerialized(file);
+                suppliers = new ArrayList<>(SupplierCodec.readAll(file));
                 
                 // Find the highest ID for nextId
                 for (Supplier supplier : suppliers) {
@@ -58,9 +81,18 @@ public class SupplierDAO {
                         nextId = supplier.getId() + 1;
                     }
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                suppliers = new ArrayList<>();
+
+                if (legacyFormat) {
+                    // One-time migration: keep the serialized file and rewrite it in the binary format
+                    File legacyFile = new File(dataFile.getPath() + ".legacy");
+                    if (!legacyFile.exists() && !file.renameTo(legacyFile)) {
+                        System.err.println("Could not keep " + file.getName() + " as " + legacyFile.getName());
+                    }
+                    saveData();
+                }
+            } catch (IOException e) {
+                // Starting empty would overwrite the file with no suppliers on the next save
+                throw new UncheckedIOException("Could not read " + file.getName() + ": " + e.getMessage(), e);
             }
         } else {
             suppliers = new ArrayList<>();
@@ -68,10 +100,18 @@ public class SupplierDAO {
     }
     
     private void saveData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(suppliers);
-        } catch (Exception e) {
-            e.printStackTrace();
+        try {
+            writeData();
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+    
+    private void writeData() throws IOException {
+        List<Supplier> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(suppliers);
         }
+        SupplierCodec.writeAll(snapshot, dataFile);
     }
 }
@@ -0,0 +1,100 @@
+package dao;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from lowercase character trigrams to the ids of the products
+ * whose text contains them. A substring query can only match products that
+ * contain every trigram of the query, so intersecting those posting lists gives
+ * a small candidate set that the caller then checks exactly.
+ */
+class TrigramIndex {
+    static final int GRAM = 3;
+
+    private final Map<Long, IntHashSet> postings = new HashMap<>();
+
+    void add(int id, String... fields) {
+        for (long trigram : trigramsOf(fields)) {
+            postings.computeIfAbsent(trigram, k -> new IntHashSet()).add(id);
+        }
+    }
+
+    void remove(int id, String... fields) {
+        for (long trigram : trigramsOf(fields)) {
+            IntHashSet ids = postings.get(trigram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Returns the ids that may contain the lowercase query, or null when the
+     * query is too short to be narrowed down by trigrams.
+     */
+    int[] candidates(String lowerQuery) {
+        if (lowerQuery.length() < GRAM) {
+            return null;
+        }
+        Set<Long> trigrams = new HashSet<>();
+        addTrigrams(lowerQuery, trigrams);
+
+        IntHashSet smallest = null;
+        IntHashSet[] lists = new IntHashSet[trigrams.size()];
+        int n = 0;
+        for (long trigram : trigrams) {
+            IntHashSet ids = postings.get(trigram);
+            if (ids == null) {
+                return new int[0];
+            }
+            lists[n++] = ids;
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+
+        int[] result = smallest.toArray();
+        int kept = 0;
+        for (int id : result) {
+            boolean inAll = true;
+            for (IntHashSet ids : lists) {
+                if (ids != smallest && !ids.contains(id)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll) {
+                result[kept++] = id;
+            }
+        }
+        return Arrays.copyOf(result, kept);
+    }
+
+    private static Set<Long> trigramsOf(String... fields) {
+        Set<Long> trigrams = new HashSet<>();
+        for (String field : fields) {
+            if (field != null) {
+                addTrigrams(field.toLowerCase(Locale.ROOT), trigrams);
+            }
+        }
+        return trigrams;
+    }
+
+    private static void addTrigrams(String text, Set<Long> trigrams) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide mapping between product categories and small int codes.
+ * Categories that differ only in letter case share a code, and the spelling
+ * seen first is the one shown. Code 0 is the empty category. Codes are never
+ * reused, so they are safe to hold on to; lookups by code take no lock.
+ */
+public final class CategoryDictionary {
+    public static final int NONE = 0;
+
+    private static final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private static volatile String[] names = {""};
+    private static volatile int size = 1;
+
+    private CategoryDictionary() {
+    }
+
+    /** Returns the code for a category, assigning one on first use. */
+    public static int code(String category) {
+        if (category == null || category.isEmpty()) {
+            return NONE;
+        }
+        Integer code = codes.get(key(category));
+        return code != null ? code : assign(category);
+    }
+
+    /** Returns the code for a category, or -1 if it has never been used. */
+    public static int find(String category) {
+        if (category == null || category.isEmpty()) {
+            return NONE;
+        }
+        Integer code = codes.get(key(category));
+        return code != null ? code : -1;
+    }
+
+    public static String name(int code) {
+        return names[code];
+    }
+
+    // Codes run from 0 to size() - 1
+    public static int size() {
+        return size;
+    }
+
+    private static synchronized int assign(String category) {
+        String key = key(category);
+        Integer existing = codes.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int code = size;
+        String[] grown = names.length > code ? names : Arrays.copyOf(names, Math.max(8, code * 2));
+        grown[code] = category;
+        // Publish the name before the code can be seen
+        names = grown;
+        size = code + 1;
+        codes.put(key, code);
+        return code;
+    }
+
+    private static String key(String category) {
+        return category.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,24 @@
+package models;
+
+public class OrderLine {
+    private final int productId;
+    private final int quantity;
+
+    public OrderLine(int productId, int quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public String toString() {
+        return quantity + " x #" + productId;
+    }
+}
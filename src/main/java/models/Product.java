@@ -1,19 +1,41 @@
 
 package models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 public class Product implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    public static final int DEFAULT_REORDER_LEVEL = 5;
+    
+    // The serialized form keeps price as a double so older files stay readable
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("name", String.class),
+        new ObjectStreamField("description", String.class),
+        new ObjectStreamField("price", double.class),
+        new ObjectStreamField("quantity", int.class),
+        new ObjectStreamField("sold", int.class),
+        new ObjectStreamField("category", String.class),
+        new ObjectStreamField("supplierId", int.class),
+        new ObjectStreamField("reorderLevel", int.class)
+    };
+    
     private int id;
     private String name;
     private String description;
-    private double price;
+    // Whole cents, so that totals add up exactly
+    private long priceCents;
     private int quantity;
     private int sold;
-    private String category;
+    // Code from CategoryDictionary; products share one copy of each category name
+    private int categoryCode;
     private int supplierId;
+    private int reorderLevel;
     
     public Product() {
         this(0, "", "", 0.0, 0, 0, "", 0);
@@ -24,14 +46,25 @@ public class Product implements Serializable {
     }
     
     public Product(int id, String name, String description, double price, int quantity, int sold, String category, int supplierId) {
+        this(id, name, description, price, quantity, sold, category, supplierId, DEFAULT_REORDER_LEVEL);
+    }
+    
+    public Product(int id, String name, String description, double price, int quantity, int sold, String category, int supplierId, int reorderLevel) {
         this.id = id;
         this.name = name;
         this.description = description;
-        this.price = price;
+        this.priceCents = Math.round(price * 100);
         this.quantity = quantity;
         this.sold = sold;
-        this.category = category;
+        this.categoryCode = CategoryDictionary.code(category);
         this.supplierId = supplierId;
+        this.reorderLevel = reorderLevel;
+    }
+    
+    public Product(Product other) {
+        this(other.id, other.name, other.description, 0.0, other.quantity, other.sold, "", other.supplierId, other.reorderLevel);
+        this.priceCents = other.priceCents;
+        this.categoryCode = other.categoryCode;
     }
     
     public int getId() {
@@ -59,11 +92,20 @@ public class Product implements Serializable {
     }
     
     public double getPrice() {
-        return price;
+        return priceCents / 100.0;
     }
     
+    // Rounded to the nearest cent
     public void setPrice(double price) {
-        this.price = price;
+        this.priceCents = Math.round(price * 100);
+    }
+    
+    public long getPriceCents() {
+        return priceCents;
+    }
+    
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
     }
     
     public int getQuantity() {
@@ -82,12 +124,24 @@ public class Product implements Serializable {
         this.sold = sold;
     }
     
+    // Spelled as the category was first seen, whatever the case used here
     public String getCategory() {
-        return category;
+        return CategoryDictionary.name(categoryCode);
     }
     
     public void setCategory(String category) {
-        this.category = category;
+        this.categoryCode = CategoryDictionary.code(category);
+    }
+    
+    public int getCategoryCode() {
+        return categoryCode;
+    }
+    
+    public void setCategoryCode(int categoryCode) {
+        if (categoryCode < 0 || categoryCode >= CategoryDictionary.size()) {
+            throw new IllegalArgumentException("Unknown category code " + categoryCode);
+        }
+        this.categoryCode = categoryCode;
     }
     
     public int getSupplierId() {
@@ -98,6 +152,18 @@ public class Product implements Serializable {
         this.supplierId = supplierId;
     }
     
+    public int getReorderLevel() {
+        return reorderLevel;
+    }
+    
+    public void setReorderLevel(int reorderLevel) {
+        this.reorderLevel = reorderLevel;
+    }
+    
+    public boolean isAtReorderPoint() {
+        return quantity <= reorderLevel;
+    }
+    
     public void sellItems(int quantity) {
         if (this.quantity >= quantity) {
             this.quantity -= quantity;
@@ -109,6 +175,34 @@ public class Product implements Serializable {
         this.quantity += quantity;
     }
     
+    // Products saved before reorder levels existed get the default level
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        name = (String) fields.get("name", "");
+        description = (String) fields.get("description", "");
+        priceCents = Math.round(fields.get("price", 0.0) * 100);
+        quantity = fields.get("quantity", 0);
+        sold = fields.get("sold", 0);
+        categoryCode = CategoryDictionary.code((String) fields.get("category", ""));
+        supplierId = fields.get("supplierId", 0);
+        reorderLevel = fields.get("reorderLevel", DEFAULT_REORDER_LEVEL);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("name", name);
+        fields.put("description", description);
+        fields.put("price", getPrice());
+        fields.put("quantity", quantity);
+        fields.put("sold", sold);
+        fields.put("category", getCategory());
+        fields.put("supplierId", supplierId);
+        fields.put("reorderLevel", reorderLevel);
+        out.writeFields();
+    }
+    
     @Override
     public String toString() {
         return name;
@@ -1,6 +1,7 @@
 package ui;
 
 import dao.ProductDAO;
+import dao.StockResult;
 import dao.SupplierDAO;
 import models.Product;
 import auth.AuthService;
@@ -9,10 +10,10 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 import javax.swing.table.TableRowSorter;
+import utils.Money;
 
 public class InventoryManagementSystem extends JFrame {
     private static final long serialVersionUID = 1L;
@@ -20,15 +21,19 @@ public class InventoryManagementSystem extends JFrame {
     private final ProductDAO productDAO;
     private JTable productTable;
     private ProductTableModel tableModel;
-    private JTextField nameField, descField, priceField, quantityField;
+    private JTextField nameField, descField, priceField, quantityField, reorderLevelField;
     private JButton addButton, editButton, deleteButton, sellButton, restockButton;
     private JLabel statusLabel;
+    private JobManager jobs;
     private TableRowSorter<ProductTableModel> sorter;
 
     private final AuthService authService;
     private final SupplierDAO supplierDAO;
     private JComboBox<String> categoryComboBox;
     private JLabel inventoryValueLabel;
+    private String searchTerm = "";
+    private String selectedCategory = "";
+    private List<String> shownCategories;
 
     public InventoryManagementSystem(AuthService authService) {
         this.authService = authService;
@@ -59,6 +64,7 @@ public class InventoryManagementSystem extends JFrame {
         // Create table
         tableModel = new ProductTableModel(productDAO.getAllProducts());
         productTable = new JTable(tableModel);
+        productTable.setDefaultRenderer(Long.class, new MoneyRenderer());
         sorter = new TableRowSorter<>(tableModel);
         productTable.setRowSorter(sorter);
         productTable.getSelectionModel().addListSelectionListener(e -> {
@@ -165,6 +171,15 @@ public class InventoryManagementSystem extends JFrame {
         quantityField = new JTextField(20);
         formPanel.add(quantityField, gbc);
 
+        // Reorder level
+        gbc.gridx = 0;
+        gbc.gridy++;
+        formPanel.add(new JLabel("Reorder Level:"), gbc);
+        gbc.gridx++;
+        reorderLevelField = new JTextField(20);
+        reorderLevelField.setToolTipText("Leave blank for the default of " + Product.DEFAULT_REORDER_LEVEL);
+        formPanel.add(reorderLevelField, gbc);
+
         // Buttons panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
 
@@ -206,8 +221,13 @@ public class InventoryManagementSystem extends JFrame {
 
         mainPanel.add(formPanel, BorderLayout.SOUTH);
 
+        // Progress of background jobs, shown above the table while one runs
+        JobProgressPanel jobProgressPanel = new JobProgressPanel();
+        mainPanel.add(jobProgressPanel, BorderLayout.NORTH);
+        jobs = new JobManager(this, jobProgressPanel, statusLabel);
+
         // Analytics and reports panel
-        JPanel reportsPanel = new JPanel(new GridLayout(6, 1, 10, 10));
+        JPanel reportsPanel = new JPanel(new GridLayout(7, 1, 10, 10));
         reportsPanel.setBorder(BorderFactory.createTitledBorder("Reports & Tools"));
 
 
@@ -219,6 +239,14 @@ public class InventoryManagementSystem extends JFrame {
         lowStockButton.addActionListener(e -> showLowStockProducts());
         reportsPanel.add(lowStockButton);
 
+        JButton excelReportButton = new JButton("Excel Report");
+        excelReportButton.addActionListener(e -> generateExcelReport());
+        reportsPanel.add(excelReportButton);
+
+        JButton pdfReportButton = new JButton("PDF Report");
+        pdfReportButton.addActionListener(e -> generatePdfReport());
+        reportsPanel.add(pdfReportButton);
+
         JButton backupButton = new JButton("Backup Data");
         backupButton.addActionListener(e -> backupData());
         reportsPanel.add(backupButton);
@@ -301,7 +329,7 @@ public class InventoryManagementSystem extends JFrame {
     }
 
     private void loadProductData() {
-        tableModel.refreshData(productDAO.getAllProducts());
+        tableModel.refreshData(productDAO.filterProducts(searchTerm, selectedCategory));
         clearForm();
         statusLabel.setText("Data loaded successfully");
         sorter.sort();
@@ -309,12 +337,33 @@ public class InventoryManagementSystem extends JFrame {
         loadCategories();
     }
 
+    // Brings one product's row up to date after it was added, changed or
+    // removed, instead of reloading and re-sorting the whole table
+    private void refreshProduct(int id) {
+        Product product = productDAO.getProductById(id);
+        if (product != null && ProductDAO.matchesFilter(product, searchTerm, selectedCategory)) {
+            tableModel.putProduct(product);
+        } else {
+            tableModel.removeProduct(id);
+        }
+        clearForm();
+        updateInventoryValue();
+        loadCategories();
+    }
+
     private void updateInventoryValue() {
-        double totalValue = productDAO.getTotalInventoryValue();
-        inventoryValueLabel.setText("Total Inventory Value: " + utils.InventoryUtils.formatCurrency(totalValue));
+        long totalValue = productDAO.getTotalInventoryValueCents();
+        inventoryValueLabel.setText("Total Inventory Value: " + Money.format(totalValue));
     }
 
+    // Rebuilds the category filter only when the set of categories changed
     private void loadCategories() {
+        List<String> categories = productDAO.getAllCategories();
+        if (categories.equals(shownCategories)) {
+            return;
+        }
+        shownCategories = categories;
+
         // Save the currently selected item
         Object selectedItem = categoryComboBox.getSelectedItem();
 
@@ -322,7 +371,6 @@ public class InventoryManagementSystem extends JFrame {
         categoryComboBox.removeAllItems();
         categoryComboBox.addItem("All Categories");
 
-        List<String> categories = productDAO.getAllCategories();
         for (String category : categories) {
             categoryComboBox.addItem(category);
         }
@@ -332,6 +380,10 @@ public class InventoryManagementSystem extends JFrame {
             categoryComboBox.setSelectedItem(selectedItem);
         } else {
             categoryComboBox.setSelectedItem("All Categories");
+            if (!selectedCategory.isEmpty()) {
+                selectedCategory = "";
+                tableModel.refreshData(productDAO.filterProducts(searchTerm, selectedCategory));
+            }
         }
 
         categoryComboBox.addActionListener(e -> {
@@ -344,11 +396,8 @@ public class InventoryManagementSystem extends JFrame {
     }
 
     private void filterProducts(String searchTerm) {
-        if (searchTerm == null || searchTerm.isEmpty()) {
-            sorter.setRowFilter(null);
-        } else {
-            sorter.setRowFilter(RowFilter.regexFilter("(?i)" + searchTerm));
-        }
+        this.searchTerm = searchTerm == null ? "" : searchTerm;
+        tableModel.refreshData(productDAO.filterProducts(this.searchTerm, selectedCategory));
         updateInventoryValue();
     }
 
@@ -356,17 +405,19 @@ public class InventoryManagementSystem extends JFrame {
         if ("All Categories".equals(category)) {
             category = "";
         }
-        tableModel.refreshData(productDAO.getProductsByCategory(category));
+        selectedCategory = category;
+        tableModel.refreshData(productDAO.filterProducts(searchTerm, selectedCategory));
     }
 
     private void checkLowStockItems() {
-        List<Product> lowStockProducts = productDAO.getLowStockProducts(5);
+        List<Product> lowStockProducts = productDAO.getProductsAtReorderPoint();
         if (!lowStockProducts.isEmpty()) {
             StringBuilder message = new StringBuilder("The following products have low stock levels:\n\n");
             for (Product product : lowStockProducts) {
                 message.append("- ").append(product.getName())
                        .append(": ").append(product.getQuantity())
-                       .append(" remaining\n");
+                       .append(" remaining (reorder level ").append(product.getReorderLevel())
+                       .append(")\n");
             }
 
             JOptionPane.showMessageDialog(
@@ -386,28 +437,48 @@ public class InventoryManagementSystem extends JFrame {
     private void exportToCsv() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Export Products to CSV");
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv"));
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv", "gz"));
+
+        // Column selection and compression, shown beside the file list
+        JPanel optionsPanel = new JPanel();
+        optionsPanel.setLayout(new BoxLayout(optionsPanel, BoxLayout.Y_AXIS));
+        optionsPanel.setBorder(BorderFactory.createTitledBorder("Columns"));
+        List<JCheckBox> columnBoxes = new ArrayList<>();
+        for (utils.CsvColumn column : utils.CsvColumn.values()) {
+            JCheckBox box = new JCheckBox(column.getHeader(), true);
+            columnBoxes.add(box);
+            optionsPanel.add(box);
+        }
+        optionsPanel.add(Box.createVerticalStrut(10));
+        JCheckBox gzipBox = new JCheckBox("Compress (gzip)");
+        optionsPanel.add(gzipBox);
+        fileChooser.setAccessory(optionsPanel);
 
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            List<utils.CsvColumn> columns = new ArrayList<>();
+            for (int i = 0; i < columnBoxes.size(); i++) {
+                if (columnBoxes.get(i).isSelected()) {
+                    columns.add(utils.CsvColumn.values()[i]);
+                }
+            }
+            if (columns.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Select at least one column to export", "Export Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            boolean gzip = gzipBox.isSelected();
+
             File file = fileChooser.getSelectedFile();
             String path = file.getAbsolutePath();
-            if (!path.toLowerCase().endsWith(".csv")) {
-                path += ".csv";
+            String extension = gzip ? ".csv.gz" : ".csv";
+            if (!path.toLowerCase().endsWith(extension)) {
+                path += gzip && path.toLowerCase().endsWith(".csv") ? ".gz" : extension;
                 file = new File(path);
             }
 
-            try {
-                utils.CsvUtils.exportToCsv(productDAO.getAllProducts(), file);
-                statusLabel.setText("Products exported to CSV successfully: " + file.getName());
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(
-                    this,
-                    "Error exporting to CSV: " + e.getMessage(),
-                    "Export Error",
-                    JOptionPane.ERROR_MESSAGE
-                );
-                e.printStackTrace();
-            }
+            File target = file;
+            jobs.submit("Export to CSV",
+                context -> utils.CsvUtils.exportToCsv(productDAO.snapshot(), target, columns, gzip, context),
+                rows -> statusLabel.setText("Exported " + rows + " products to CSV successfully: " + target.getName()));
         }
     }
 
@@ -419,20 +490,32 @@ public class InventoryManagementSystem extends JFrame {
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
 
-            try {
-                List<Product> importedProducts = utils.CsvUtils.importFromCsv(file, productDAO);
-                loadProductData();
-                statusLabel.setText("Imported " + importedProducts.size() + " products from CSV successfully");
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(
-                    this,
-                    "Error importing from CSV: " + e.getMessage(),
-                    "Import Error",
-                    JOptionPane.ERROR_MESSAGE
-                );
-                e.printStackTrace();
+            jobs.submit("Import from CSV",
+                context -> utils.CsvUtils.importFromCsv(file, productDAO, context),
+                report -> {
+                    loadProductData();
+                    updateInventoryValue();
+                    loadCategories();
+                    statusLabel.setText("Imported products from CSV: " + report);
+                    if (!report.getRejected().isEmpty()) {
+                        showRejectedRows(report);
+                    }
+                });
+        }
+    }
+
+    private void showRejectedRows(utils.ImportReport report) {
+        StringBuilder message = new StringBuilder();
+        message.append(report.getRejected().size()).append(" rows were not imported:\n");
+        int shown = 0;
+        for (utils.ImportReport.Rejection rejection : report.getRejected()) {
+            if (shown++ == 20) {
+                message.append("...");
+                break;
             }
+            message.append(rejection).append('\n');
         }
+        JOptionPane.showMessageDialog(this, message.toString(), "Import Warnings", JOptionPane.WARNING_MESSAGE);
     }
 
     private void clearForm() {
@@ -440,6 +523,7 @@ public class InventoryManagementSystem extends JFrame {
         descField.setText("");
         priceField.setText("");
         quantityField.setText("");
+        reorderLevelField.setText("");
         productTable.clearSelection();
     }
 
@@ -447,15 +531,16 @@ public class InventoryManagementSystem extends JFrame {
         try {
             String name = nameField.getText().trim();
             String description = descField.getText().trim();
-            double price = Double.parseDouble(priceField.getText().trim());
+            long priceCents = Money.parseCents(priceField.getText());
             int quantity = Integer.parseInt(quantityField.getText().trim());
+            int reorderLevel = parseReorderLevel(Product.DEFAULT_REORDER_LEVEL);
 
             if (name.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Name cannot be empty", "Input Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            if (price < 0) {
+            if (priceCents < 0) {
                 JOptionPane.showMessageDialog(this, "Price cannot be negative", "Input Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
@@ -465,10 +550,17 @@ public class InventoryManagementSystem extends JFrame {
                 return;
             }
 
-            Product product = new Product(0, name, description, price, quantity, 0);
+            if (reorderLevel < 0) {
+                JOptionPane.showMessageDialog(this, "Reorder level cannot be negative", "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            Product product = new Product(0, name, description, 0.0, quantity, 0);
+            product.setPriceCents(priceCents);
+            product.setReorderLevel(reorderLevel);
             productDAO.addProduct(product);
 
-            loadProductData();
+            refreshProduct(product.getId());
             statusLabel.setText("Product added successfully");
 
         } catch (NumberFormatException e) {
@@ -477,22 +569,23 @@ public class InventoryManagementSystem extends JFrame {
     }
 
     private void editProduct() {
-        int selectedRow = productTable.getSelectedRow();
+        int selectedRow = selectedModelRow();
         if (selectedRow >= 0) {
-            Product product = tableModel.getProductAt(selectedRow);
+            Product product = new Product(tableModel.getProductAt(selectedRow));
 
             try {
                 String name = nameField.getText().trim();
                 String description = descField.getText().trim();
-                double price = Double.parseDouble(priceField.getText().trim());
+                long priceCents = Money.parseCents(priceField.getText());
                 int quantity = Integer.parseInt(quantityField.getText().trim());
+                int reorderLevel = parseReorderLevel(product.getReorderLevel());
 
                 if (name.isEmpty()) {
                     JOptionPane.showMessageDialog(this, "Name cannot be empty", "Input Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
 
-                if (price < 0) {
+                if (priceCents < 0) {
                     JOptionPane.showMessageDialog(this, "Price cannot be negative", "Input Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
@@ -502,14 +595,20 @@ public class InventoryManagementSystem extends JFrame {
                     return;
                 }
 
+                if (reorderLevel < 0) {
+                    JOptionPane.showMessageDialog(this, "Reorder level cannot be negative", "Input Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
                 product.setName(name);
                 product.setDescription(description);
-                product.setPrice(price);
+                product.setPriceCents(priceCents);
                 product.setQuantity(quantity);
+                product.setReorderLevel(reorderLevel);
 
                 productDAO.updateProduct(product);
 
-                loadProductData();
+                refreshProduct(product.getId());
                 statusLabel.setText("Product updated successfully");
 
             } catch (NumberFormatException e) {
@@ -518,8 +617,19 @@ public class InventoryManagementSystem extends JFrame {
         }
     }
 
+    // The selection is in view order, which differs once the table is sorted
+    private int selectedModelRow() {
+        int viewRow = productTable.getSelectedRow();
+        return viewRow >= 0 ? productTable.convertRowIndexToModel(viewRow) : -1;
+    }
+
+    private int parseReorderLevel(int defaultLevel) {
+        String text = reorderLevelField.getText().trim();
+        return text.isEmpty() ? defaultLevel : Integer.parseInt(text);
+    }
+
     private void deleteProduct() {
-        int selectedRow = productTable.getSelectedRow();
+        int selectedRow = selectedModelRow();
         if (selectedRow >= 0) {
             Product product = tableModel.getProductAt(selectedRow);
 
@@ -532,14 +642,14 @@ public class InventoryManagementSystem extends JFrame {
 
             if (confirm == JOptionPane.YES_OPTION) {
                 productDAO.deleteProduct(product.getId());
-                loadProductData();
+                refreshProduct(product.getId());
                 statusLabel.setText("Product deleted successfully");
             }
         }
     }
 
     private void sellProduct() {
-        int selectedRow = productTable.getSelectedRow();
+        int selectedRow = selectedModelRow();
         if (selectedRow >= 0) {
             Product product = tableModel.getProductAt(selectedRow);
 
@@ -564,10 +674,14 @@ public class InventoryManagementSystem extends JFrame {
                         return;
                     }
 
-                    product.sellItems(quantity);
-                    productDAO.updateProduct(product);
+                    StockResult result = productDAO.sell(product.getId(), quantity);
+                    if (result != StockResult.OK) {
+                        JOptionPane.showMessageDialog(this, describeStockResult(result), "Input Error", JOptionPane.ERROR_MESSAGE);
+                        refreshProduct(product.getId());
+                        return;
+                    }
 
-                    loadProductData();
+                    refreshProduct(product.getId());
                     statusLabel.setText("Product sold successfully");
 
                 } catch (NumberFormatException e) {
@@ -578,7 +692,7 @@ public class InventoryManagementSystem extends JFrame {
     }
 
     private void restockProduct() {
-        int selectedRow = productTable.getSelectedRow();
+        int selectedRow = selectedModelRow();
         if (selectedRow >= 0) {
             Product product = tableModel.getProductAt(selectedRow);
 
@@ -598,10 +712,14 @@ public class InventoryManagementSystem extends JFrame {
                         return;
                     }
 
-                    product.restock(quantity);
-                    productDAO.updateProduct(product);
+                    StockResult result = productDAO.restock(product.getId(), quantity);
+                    if (result != StockResult.OK) {
+                        JOptionPane.showMessageDialog(this, describeStockResult(result), "Input Error", JOptionPane.ERROR_MESSAGE);
+                        refreshProduct(product.getId());
+                        return;
+                    }
 
-                    loadProductData();
+                    refreshProduct(product.getId());
                     statusLabel.setText("Product restocked successfully");
 
                 } catch (NumberFormatException e) {
@@ -612,6 +730,15 @@ public class InventoryManagementSystem extends JFrame {
     }
 
 
+    private String describeStockResult(StockResult result) {
+        switch (result) {
+            case INSUFFICIENT_STOCK: return "Not enough stock available";
+            case UNKNOWN_PRODUCT: return "Product no longer exists";
+            case INVALID_QUANTITY: return "Invalid quantity";
+            default: return result.toString();
+        }
+    }
+
     private void showTopSellingProduct() {
         Product topProduct = productDAO.getTopSellingProduct();
 
@@ -631,16 +758,17 @@ public class InventoryManagementSystem extends JFrame {
     }
 
     private void showLowStockProducts() {
-        List<Product> lowStockProducts = productDAO.getLowStockProducts(5); // Threshold of 5
+        List<Product> lowStockProducts = productDAO.getProductsAtReorderPoint();
 
         if (!lowStockProducts.isEmpty()) {
             StringBuilder message = new StringBuilder();
-            message.append("Low Stock Products (Quantity <= 5):\n\n");
+            message.append("Low Stock Products (at or below reorder level):\n\n");
 
             for (Product product : lowStockProducts) {
                 message.append("- ").append(product.getName())
                        .append(" (ID: ").append(product.getId())
                        .append(", Stock: ").append(product.getQuantity())
+                       .append(", Reorder Level: ").append(product.getReorderLevel())
                        .append(")\n");
             }
 
@@ -653,7 +781,7 @@ public class InventoryManagementSystem extends JFrame {
         } else {
             JOptionPane.showMessageDialog(
                 this,
-                "No products with low stock (Quantity <= 5)",
+                "No products at or below their reorder level",
                 "Low Stock Products",
                 JOptionPane.INFORMATION_MESSAGE
             );
@@ -672,13 +800,58 @@ public class InventoryManagementSystem extends JFrame {
                 path += ".bak";
             }
 
-            try {
-                productDAO.backup(path);
-                statusLabel.setText("Data backup created successfully");
-                JOptionPane.showMessageDialog(this, "Data backup created successfully", "Backup", JOptionPane.INFORMATION_MESSAGE);
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Error creating backup: " + e.getMessage(), "Backup Error", JOptionPane.ERROR_MESSAGE);
+            String target = path;
+            jobs.submit("Backup",
+                context -> {
+                    productDAO.backup(target, context);
+                    return null;
+                },
+                result -> {
+                    statusLabel.setText("Data backup created successfully");
+                    JOptionPane.showMessageDialog(this, "Data backup created successfully", "Backup", JOptionPane.INFORMATION_MESSAGE);
+                });
+        }
+    }
+
+    private void generateExcelReport() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save Excel Report");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Excel Workbooks", "xlsx"));
+
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            String path = fileChooser.getSelectedFile().getAbsolutePath();
+            if (!path.toLowerCase().endsWith(".xlsx")) {
+                path += ".xlsx";
+            }
+            File file = new File(path);
+
+            jobs.submit("Excel report",
+                context -> {
+                    utils.ReportGenerator.generateExcelReport(productDAO, supplierDAO.getAllSuppliers(), file, context);
+                    return null;
+                },
+                result -> statusLabel.setText("Excel report saved: " + file.getName()));
+        }
+    }
+
+    private void generatePdfReport() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save PDF Report");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("PDF Documents", "pdf"));
+
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            String path = fileChooser.getSelectedFile().getAbsolutePath();
+            if (!path.toLowerCase().endsWith(".pdf")) {
+                path += ".pdf";
             }
+            File file = new File(path);
+
+            jobs.submit("PDF report",
+                context -> {
+                    utils.PdfReportGenerator.generatePdfReport(productDAO, file, context);
+                    return null;
+                },
+                result -> statusLabel.setText("PDF report saved: " + file.getName()));
         }
     }
 
@@ -698,14 +871,18 @@ public class InventoryManagementSystem extends JFrame {
             );
 
             if (confirm == JOptionPane.YES_OPTION) {
-                try {
-                    productDAO.restore(file.getAbsolutePath());
-                    loadProductData();
-                    statusLabel.setText("Data restored successfully");
-                    JOptionPane.showMessageDialog(this, "Data restored successfully", "Restore", JOptionPane.INFORMATION_MESSAGE);
-                } catch (Exception e) {
-                    JOptionPane.showMessageDialog(this, "Error restoring data: " + e.getMessage(), "Restore Error", JOptionPane.ERROR_MESSAGE);
-                }
+                jobs.submit("Restore",
+                    context -> {
+                        productDAO.restore(file.getAbsolutePath(), context);
+                        return null;
+                    },
+                    result -> {
+                        loadProductData();
+                        updateInventoryValue();
+                        loadCategories();
+                        statusLabel.setText("Data restored successfully");
+                        JOptionPane.showMessageDialog(this, "Data restored successfully", "Restore", JOptionPane.INFORMATION_MESSAGE);
+                    });
             }
         }
     }
@@ -0,0 +1,111 @@
+package ui;
+
+import javax.swing.*;
+import java.awt.Component;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import utils.JobContext;
+
+/**
+ * Runs imports, exports, backups and restores off the event thread, one at a
+ * time, so the window stays responsive and two jobs never work on the data at
+ * once. Jobs submitted while one runs wait in a short queue. Cancelling is
+ * cooperative: a job stops at its next safe point rather than being
+ * interrupted in the middle of a write.
+ */
+class JobManager {
+    private static final int MAX_QUEUED = 8;
+
+    interface Task<T> {
+        T run(JobContext context) throws Exception;
+    }
+
+    // Called on the event thread
+    interface Completion<T> {
+        void done(T result);
+    }
+
+    private final Component owner;
+    private final JobProgressPanel progressPanel;
+    private final JLabel statusLabel;
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+            Thread thread = new Thread(r, "inventory-jobs");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    JobManager(Component owner, JobProgressPanel progressPanel, JLabel statusLabel) {
+        this.owner = owner;
+        this.progressPanel = progressPanel;
+        this.statusLabel = statusLabel;
+    }
+
+    // Must be called on the event thread
+    <T> void submit(String name, Task<T> task, Completion<T> completion) {
+        try {
+            executor.execute(new Job<>(name, task, completion));
+        } catch (RejectedExecutionException e) {
+            JOptionPane.showMessageDialog(owner,
+                "Too many jobs are waiting. Try again when one has finished.",
+                "Jobs Busy", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        progressPanel.setQueued(executor.getQueue().size());
+        statusLabel.setText(name + " queued");
+    }
+
+    private class Job<T> extends SwingWorker<T, Void> {
+        private final String name;
+        private final Task<T> task;
+        private final Completion<T> completion;
+        private final JobContext context = new JobContext();
+
+        Job(String name, Task<T> task, Completion<T> completion) {
+            this.name = name;
+            this.task = task;
+            this.completion = completion;
+        }
+
+        @Override
+        protected T doInBackground() throws Exception {
+            context.start();
+            SwingUtilities.invokeLater(() -> {
+                progressPanel.started(name, context);
+                progressPanel.setQueued(executor.getQueue().size());
+                statusLabel.setText(name + "...");
+            });
+            return task.run(context);
+        }
+
+        @Override
+        protected void done() {
+            progressPanel.finished();
+            progressPanel.setQueued(executor.getQueue().size());
+            T result;
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof CancellationException) {
+                    statusLabel.setText(name + " cancelled; no changes were made");
+                } else {
+                    statusLabel.setText(name + " failed");
+                    JOptionPane.showMessageDialog(owner,
+                        name + " failed: " + cause.getMessage(),
+                        "Job Failed", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
+                }
+                return;
+            } catch (InterruptedException | CancellationException e) {
+                statusLabel.setText(name + " cancelled; no changes were made");
+                return;
+            }
+            completion.done(result);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ui;
+
+import javax.swing.*;
+import java.awt.*;
+import utils.JobContext;
+
+/**
+ * Shows the running background job: a progress bar, rows, bytes and pages
+ * done with the current rates, the number of jobs waiting, and a Cancel
+ * button. Hidden while no job runs.
+ */
+class JobProgressPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final int REFRESH_MILLIS = 250;
+
+    private final JLabel nameLabel = new JLabel();
+    private final JProgressBar progressBar = new JProgressBar(0, 1000);
+    private final JLabel detailLabel = new JLabel();
+    private final JLabel queuedLabel = new JLabel();
+    private final JButton cancelButton = new JButton("Cancel");
+    private final Timer refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+    private JobContext context;
+
+    JobProgressPanel() {
+        super(new BorderLayout(10, 0));
+        setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createEtchedBorder(),
+            BorderFactory.createEmptyBorder(5, 5, 5, 5)));
+
+        JPanel textPanel = new JPanel(new GridLayout(2, 1));
+        textPanel.add(nameLabel);
+        textPanel.add(detailLabel);
+        add(textPanel, BorderLayout.WEST);
+        add(progressBar, BorderLayout.CENTER);
+
+        JPanel rightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        rightPanel.add(queuedLabel);
+        rightPanel.add(cancelButton);
+        add(rightPanel, BorderLayout.EAST);
+
+        cancelButton.addActionListener(e -> {
+            if (context != null) {
+                context.cancel();
+                cancelButton.setEnabled(false);
+                detailLabel.setText("Cancelling...");
+            }
+        });
+        setVisible(false);
+    }
+
+    void started(String name, JobContext context) {
+        this.context = context;
+        nameLabel.setText(name);
+        detailLabel.setText("Starting...");
+        progressBar.setIndeterminate(true);
+        cancelButton.setEnabled(true);
+        setVisible(true);
+        refreshTimer.start();
+    }
+
+    void finished() {
+        refreshTimer.stop();
+        context = null;
+        setVisible(false);
+    }
+
+    void setQueued(int queued) {
+        queuedLabel.setText(queued == 0 ? "" : queued + " more queued");
+    }
+
+    private void refresh() {
+        if (context == null || context.isCancelled()) {
+            return;
+        }
+        double fraction = context.getFraction();
+        progressBar.setIndeterminate(fraction < 0);
+        if (fraction >= 0) {
+            progressBar.setValue((int) (fraction * 1000));
+        }
+        long rows = context.getRows();
+        long bytes = context.getBytes();
+        double seconds = Math.max(context.getElapsedMillis(), 1) / 1000.0;
+        StringBuilder detail = new StringBuilder();
+        detail.append(String.format("%,d rows", rows));
+        if (bytes > 0) {
+            detail.append(", ").append(megabytes(bytes));
+            if (context.getTotalBytes() > 0) {
+                detail.append(" of ").append(megabytes(context.getTotalBytes()));
+            }
+        }
+        detail.append(String.format(", %,.0f rows/s", rows / seconds));
+        if (bytes > 0) {
+            detail.append(", ").append(megabytes((long) (bytes / seconds))).append("/s");
+        }
+        long pages = context.getPages();
+        if (pages > 0) {
+            detail.append(String.format(", %,d pages, %,.0f pages/s", pages, pages / seconds));
+        }
+        detailLabel.setText(detail.toString());
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,25 @@
+package ui;
+
+import javax.swing.table.DefaultTableCellRenderer;
+import utils.Money;
+
+// Renders a Long amount of cents as currency, reusing one buffer for every cell
+public class MoneyRenderer extends DefaultTableCellRenderer {
+    private static final long serialVersionUID = 1L;
+
+    private final StringBuilder buffer = new StringBuilder(24);
+
+    public MoneyRenderer() {
+        setHorizontalAlignment(RIGHT);
+    }
+
+    @Override
+    protected void setValue(Object value) {
+        if (value instanceof Long) {
+            buffer.setLength(0);
+            setText(Money.appendTo(buffer, (Long) value).toString());
+        } else {
+            super.setValue(value);
+        }
+    }
+}
@@ -4,29 +4,103 @@ package ui;
 import models.Product;
 import dao.SupplierDAO;
 import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Rows for the product table. refreshData swaps in a whole list; the
+ * single-product methods change one row in place and fire an event for just
+ * that row, so the table repaints and the sorter re-sorts only what changed.
+ * A removed row is filled by the last row, so no other row changes index.
+ *
+ * refreshData keeps the list it is given. The list is copied on the first
+ * single-product change and the id-to-row map is built on the first lookup,
+ * so refreshing while the user types costs nothing per row.
+ */
 public class ProductTableModel extends AbstractTableModel {
     private static final long serialVersionUID = 1L;
 
     private final String[] COLUMN_NAMES = {"ID", "Name", "Description", "Category", "Price", "Quantity", "Sold"};
     private List<Product> products;
+    // False while products is the caller's list, which may be a read-only snapshot
+    private boolean ownsRows;
     private SupplierDAO supplierDAO;
+    private Map<Integer, Integer> rowById;
 
     public ProductTableModel(List<Product> products) {
-        this.products = products;
+        setRows(products);
     }
 
     public ProductTableModel(List<Product> products, SupplierDAO supplierDAO) {
-        this.products = products;
+        setRows(products);
         this.supplierDAO = supplierDAO;
     }
 
     public void refreshData(List<Product> products) {
-        this.products = products;
+        setRows(products);
         fireTableDataChanged();
     }
 
+    public int getRowForId(int id) {
+        return rowIndex().getOrDefault(id, -1);
+    }
+
+    private Map<Integer, Integer> rowIndex() {
+        if (rowById == null) {
+            rowById = new HashMap<>(products.size() * 2);
+            for (int i = 0; i < products.size(); i++) {
+                rowById.put(products.get(i).getId(), i);
+            }
+        }
+        return rowById;
+    }
+
+    private List<Product> ownRows() {
+        if (!ownsRows) {
+            products = new ArrayList<>(products);
+            ownsRows = true;
+        }
+        return products;
+    }
+
+    // Replaces the product's row, or appends one if it is not shown yet
+    public void putProduct(Product product) {
+        int row = getRowForId(product.getId());
+        if (row >= 0) {
+            ownRows().set(row, product);
+            fireTableRowsUpdated(row, row);
+        } else {
+            row = products.size();
+            ownRows().add(product);
+            rowById.put(product.getId(), row);
+            fireTableRowsInserted(row, row);
+        }
+    }
+
+    public void removeProduct(int id) {
+        int row = getRowForId(id);
+        if (row < 0) {
+            return;
+        }
+        rowById.remove(id);
+        int last = products.size() - 1;
+        Product moved = ownRows().remove(last);
+        fireTableRowsDeleted(last, last);
+        if (row < last) {
+            products.set(row, moved);
+            rowById.put(moved.getId(), row);
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    private void setRows(List<Product> products) {
+        this.products = products;
+        ownsRows = false;
+        rowById = null;
+    }
+
     @Override
     public int getRowCount() {
         return products.size();
@@ -42,6 +116,17 @@ public class ProductTableModel extends AbstractTableModel {
         return COLUMN_NAMES[column];
     }
 
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        switch (columnIndex) {
+            case 0: return Integer.class;
+            case 4: return Long.class;
+            case 5: return Integer.class;
+            case 6: return Integer.class;
+            default: return String.class;
+        }
+    }
+
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
         Product product = products.get(rowIndex);
@@ -51,7 +136,8 @@ public class ProductTableModel extends AbstractTableModel {
             case 1: return product.getName();
             case 2: return product.getDescription();
             case 3: return product.getCategory();
-            case 4: return String.format("$%.2f", product.getPrice());
+            // Cents, shown as currency by MoneyRenderer
+            case 4: return product.getPriceCents();
             case 5: return product.getQuantity();
             case 6: return product.getSold();
             default: return null;
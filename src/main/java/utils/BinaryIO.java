@@ -0,0 +1,168 @@
+package utils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Primitives for the application's binary data files: varint and zigzag
+ * integers, length-prefixed UTF-8 strings, and a small versioned file header.
+ * Every data file starts with the magic bytes "IMSD", a one-byte record type
+ * and a one-byte format version.
+ */
+public class BinaryIO {
+    public static final int HEADER_SIZE = 6;
+    private static final byte[] MAGIC = {'I', 'M', 'S', 'D'};
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    public interface Contents {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes the file through a temp file that is synced and then renamed over
+     * it, so a crash leaves either the old file or the new one, never a mix.
+     */
+    public static void writeFile(File file, Contents contents) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                contents.writeTo(out);
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            replace(tempFile, file);
+        } catch (IOException | RuntimeException e) {
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    // The temp file must already be synced
+    public static void replace(File tempFile, File file) throws IOException {
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Makes the rename itself durable; not every platform can sync a directory
+        File directory = file.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    public static void writeHeader(DataOutput out, char recordType, int version) throws IOException {
+        out.write(MAGIC);
+        out.writeByte(recordType);
+        out.writeByte(version);
+    }
+
+    // Returns the format version, or throws if the file holds other records
+    public static int readHeader(DataInput in, char recordType) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not an inventory data file");
+            }
+        }
+        int type = in.readUnsignedByte();
+        if (type != recordType) {
+            throw new IOException("Expected '" + recordType + "' records but found '" + (char) type + "'");
+        }
+        return in.readUnsignedByte();
+    }
+
+    // Files written by earlier versions hold a Java-serialized collection
+    public static boolean isJavaSerialized(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 2 && in.readUnsignedShort() == JAVA_SERIALIZATION_MAGIC;
+        }
+    }
+
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // Zigzag keeps small negative numbers short
+    public static void writeSignedVarInt(DataOutput out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readSignedVarInt(DataInput in) throws IOException {
+        int raw = readVarInt(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readSignedVarLong(DataInput in) throws IOException {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    // Null is written as an empty string
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return "";
+        }
+        if (length < 0) {
+            throw new IOException("Malformed string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
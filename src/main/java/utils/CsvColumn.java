@@ -0,0 +1,24 @@
+package utils;
+
+// Columns the CSV export can write; the headers are the names the import looks for
+public enum CsvColumn {
+    ID("ID"),
+    NAME("Name"),
+    DESCRIPTION("Description"),
+    PRICE("Price"),
+    QUANTITY("Quantity"),
+    SOLD("Sold"),
+    CATEGORY("Category"),
+    SUPPLIER_ID("Supplier ID"),
+    REORDER_LEVEL("Reorder Level");
+
+    private final String header;
+
+    CsvColumn(String header) {
+        this.header = header;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+}
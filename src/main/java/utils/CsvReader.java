@@ -0,0 +1,502 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a UTF-8 CSV file through memory mappings and parses it in parallel.
+ * The first record is the header, unless the caller finds it is data and
+ * calls readHeaderAsRecord. The rest of the file is cut into chunks,
+ * and each chunk is moved forward to the first record that starts in it, so
+ * a quoted field holding commas or newlines is never split.
+ *
+ * As in RFC 4180, a quote opens a quoted field only as the first character of
+ * the field; anywhere else it is an ordinary character, so a stray inch mark
+ * does not swallow the lines after it. Inside a quoted field a doubled quote
+ * stands for one quote, and a single quote closes the field. Lines may end in
+ * either \n or \r\n.
+ *
+ * The parser is a four-state machine. Each chunk first runs it from all four
+ * states at once, which gives the state at every chunk start exactly without
+ * parsing the chunks in order.
+ */
+public class CsvReader implements Closeable {
+    // Mappings are limited to 2 GB each, so larger files use several
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+    // Rows between progress reports and cancellation checks
+    private static final int PROGRESS_ROWS = 4096;
+
+    // Parser states: at the start of a field, in an unquoted field, in a
+    // quoted field, and in a quoted field just after a quote
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    // Byte classes
+    private static final int OTHER = 0;
+    private static final int QUOTE = 1;
+    private static final int COMMA = 2;
+    private static final int NEWLINE = 3;
+
+    private static final byte[] CLASSES = new byte[256];
+    private static final int[][] NEXT = {
+        {UNQUOTED, QUOTED, FIELD_START, FIELD_START},
+        {UNQUOTED, UNQUOTED, FIELD_START, FIELD_START},
+        {QUOTED, QUOTE_IN_QUOTED, QUOTED, QUOTED},
+        {UNQUOTED, QUOTED, FIELD_START, FIELD_START}
+    };
+    // NEXT applied to all four states at once, two bits per state, indexed
+    // by (packed states << 2 | byte class)
+    private static final byte[] PACKED_NEXT = new byte[256 * 4];
+    private static final int ALL_STATES = FIELD_START | UNQUOTED << 2 | QUOTED << 4 | QUOTE_IN_QUOTED << 6;
+
+    static {
+        CLASSES['"'] = QUOTE;
+        CLASSES[','] = COMMA;
+        CLASSES['\n'] = NEWLINE;
+        for (int packed = 0; packed < 256; packed++) {
+            for (int type = 0; type < 4; type++) {
+                int next = 0;
+                for (int k = 0; k < 4; k++) {
+                    next |= NEXT[(packed >>> (2 * k)) & 3][type] << (2 * k);
+                }
+                PACKED_NEXT[packed << 2 | type] = (byte) next;
+            }
+        }
+    }
+
+    public interface RowMapper<T> {
+        // Returns null to leave the row out. The row is reused once this returns.
+        T map(Row row);
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+    private final List<String> header;
+    private final long headerStart;
+    private long bodyStart;
+    private final long chunkSize;
+
+    private CsvReader(File file, long chunkSize) throws IOException {
+        this.chunkSize = chunkSize;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << SEGMENT_SHIFT));
+            }
+            long start = 0;
+            // Skip a UTF-8 byte order mark
+            if (size >= 3 && at(0) == (byte) 0xEF && at(1) == (byte) 0xBB && at(2) == (byte) 0xBF) {
+                start = 3;
+            }
+            headerStart = start;
+            Row row = new Row();
+            bodyStart = row.parse(start, 1);
+            List<String> names = new ArrayList<>();
+            if (!row.isBlank()) {
+                for (int i = 0; i < row.size(); i++) {
+                    names.add(row.getString(i));
+                }
+            }
+            header = Collections.unmodifiableList(names);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static CsvReader open(File file) throws IOException {
+        return new CsvReader(file, CHUNK_SIZE);
+    }
+
+    // Smaller chunks let tests put chunk boundaries anywhere in a small file
+    static CsvReader open(File file, long chunkSize) throws IOException {
+        return new CsvReader(file, chunkSize);
+    }
+
+    // Empty for an empty file
+    public List<String> getHeader() {
+        return header;
+    }
+
+    // For a file without a header: parallelMap then starts at the first record
+    public void readHeaderAsRecord() {
+        bodyStart = headerStart;
+    }
+
+    /**
+     * Maps every record after the header, in parallel on the common fork/join
+     * pool, and returns the results in file order. The mapper must be safe to
+     * call from several threads.
+     */
+    public <T> List<T> parallelMap(RowMapper<T> mapper) {
+        return parallelMap(mapper, new JobContext());
+    }
+
+    // Reports rows and bytes parsed to the context and stops with a
+    // CancellationException once it is cancelled
+    public <T> List<T> parallelMap(RowMapper<T> mapper, JobContext context) {
+        int chunks = (int) Math.max(1, (size - bodyStart + chunkSize - 1) / chunkSize);
+        long[] chunkStart = new long[chunks + 1];
+        for (int i = 0; i < chunks; i++) {
+            chunkStart[i] = bodyStart + i * chunkSize;
+        }
+        chunkStart[chunks] = size;
+
+        // Pass 1: per chunk, the state it leaves the parser in for each state
+        // it could start in, and its newlines. Chained in order, that gives
+        // the state and line number at each chunk start
+        long[][] runs = IntStream.range(0, chunks).parallel()
+            .mapToObj(i -> run(chunkStart[i], chunkStart[i + 1]))
+            .toArray(long[][]::new);
+        int[] startState = new int[chunks];
+        int[] lineNumber = new int[chunks];
+        int state = FIELD_START;
+        long lines = 1 + countNewlines(0, bodyStart);
+        for (int i = 0; i < chunks; i++) {
+            startState[i] = state;
+            lineNumber[i] = (int) lines;
+            state = (int) (runs[i][0] >>> (2 * state)) & 3;
+            lines += runs[i][1];
+        }
+        context.checkCancelled();
+
+        // Pass 2: move each chunk start to the first record that begins in it
+        long[] recordStart = new long[chunks + 1];
+        int[] recordLine = new int[chunks + 1];
+        recordStart[chunks] = size;
+        IntStream.range(0, chunks).parallel().forEach(i -> {
+            long position = chunkStart[i];
+            int line = lineNumber[i];
+            if (i > 0) {
+                int current = startState[i];
+                if (current != FIELD_START || at(position - 1) != '\n') {
+                    while (position < size) {
+                        int type = CLASSES[at(position++) & 0xFF];
+                        if (type == NEWLINE) {
+                            line++;
+                            if (current != QUOTED) {
+                                break;
+                            }
+                        }
+                        current = NEXT[current][type];
+                    }
+                }
+            }
+            recordStart[i] = position;
+            recordLine[i] = line;
+        });
+
+        // Pass 3: parse each chunk's records
+        List<List<T>> results = IntStream.range(0, chunks).parallel()
+            .mapToObj(i -> {
+                List<T> mapped = new ArrayList<>();
+                Row row = new Row();
+                long position = recordStart[i];
+                long reported = position;
+                int rows = 0;
+                int line = recordLine[i];
+                while (position < recordStart[i + 1]) {
+                    position = row.parse(position, line);
+                    line += row.lines;
+                    if (!row.isBlank()) {
+                        T value = mapper.map(row);
+                        if (value != null) {
+                            mapped.add(value);
+                        }
+                    }
+                    if (++rows == PROGRESS_ROWS) {
+                        context.addRows(rows);
+                        context.addBytes(position - reported);
+                        context.checkCancelled();
+                        reported = position;
+                        rows = 0;
+                    }
+                }
+                context.addRows(rows);
+                context.addBytes(position - reported);
+                return mapped;
+            })
+            .collect(Collectors.toList());
+        List<T> all = new ArrayList<>();
+        for (List<T> mapped : results) {
+            all.addAll(mapped);
+        }
+        return all;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private byte at(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    // Returns the packed end states for the four start states, and the newlines
+    private long[] run(long from, long to) {
+        int packed = ALL_STATES;
+        long newlines = 0;
+        for (long position = from; position < to; position++) {
+            int type = CLASSES[at(position) & 0xFF];
+            packed = PACKED_NEXT[packed << 2 | type] & 0xFF;
+            if (type == NEWLINE) {
+                newlines++;
+            }
+        }
+        return new long[] {packed, newlines};
+    }
+
+    private long countNewlines(long from, long to) {
+        long newlines = 0;
+        for (long position = from; position < to; position++) {
+            if (at(position) == '\n') {
+                newlines++;
+            }
+        }
+        return newlines;
+    }
+
+    /**
+     * One record, as byte ranges into the mapped file. Numbers are parsed
+     * straight from those bytes; only getString creates objects.
+     */
+    public class Row {
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private boolean[] quoted = new boolean[16];
+        private int fields;
+        private int lineNumber;
+        private int lines;
+        private boolean unterminated;
+        private byte[] scratch = new byte[256];
+
+        // Fills the row from the record at position and returns where the next one starts
+        private long parse(long position, int line) {
+            lineNumber = line;
+            lines = 0;
+            fields = 0;
+            long fieldStart = position;
+            int state = FIELD_START;
+            boolean terminated = false;
+            while (position < size) {
+                int type = CLASSES[at(position) & 0xFF];
+                if (type == NEWLINE) {
+                    lines++;
+                    if (state != QUOTED) {
+                        terminated = true;
+                        break;
+                    }
+                } else if (type == COMMA && state != QUOTED) {
+                    addField(fieldStart, position);
+                    fieldStart = position + 1;
+                }
+                state = NEXT[state][type];
+                position++;
+            }
+            long end = position;
+            if (end > fieldStart && at(end - 1) == '\r') {
+                end--;
+            }
+            addField(fieldStart, end);
+            unterminated = state == QUOTED && !terminated;
+            if (!terminated && size > 0 && at(size - 1) != '\n') {
+                // The last line has no newline of its own
+                lines++;
+            }
+            return terminated ? position + 1 : size;
+        }
+
+        private void addField(long start, long end) {
+            if (fields == starts.length) {
+                starts = Arrays.copyOf(starts, fields * 2);
+                ends = Arrays.copyOf(ends, fields * 2);
+                quoted = Arrays.copyOf(quoted, fields * 2);
+            }
+            starts[fields] = start;
+            ends[fields] = end;
+            quoted[fields] = start < end && at(start) == '"';
+            fields++;
+        }
+
+        private boolean isBlank() {
+            return fields == 1 && starts[0] == ends[0];
+        }
+
+        // 1-based physical line the record starts on; the header is line 1
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        // Physical lines the record spans; more than one when a quoted field holds newlines
+        public int getLineCount() {
+            return lines;
+        }
+
+        // True when a quoted field was still open at the end of the file
+        public boolean isUnterminated() {
+            return unterminated;
+        }
+
+        public int size() {
+            return fields;
+        }
+
+        public String getString(int field) {
+            int length = 0;
+            if (!quoted[field]) {
+                length = copy(field);
+            } else {
+                // Skips the opening quote; text after the closing quote is kept as is
+                boolean inQuotes = true;
+                long end = ends[field];
+                for (long position = starts[field] + 1; position < end; position++) {
+                    byte b = at(position);
+                    if (b != '"' || !inQuotes) {
+                        length = put(length, b);
+                    } else if (position + 1 < end && at(position + 1) == '"') {
+                        length = put(length, b);
+                        position++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        public int getInt(int field) {
+            long start = starts[field];
+            long end = ends[field];
+            while (start < end && at(start) == ' ') {
+                start++;
+            }
+            while (end > start && at(end - 1) == ' ') {
+                end--;
+            }
+            boolean negative = start < end && at(start) == '-';
+            if (negative) {
+                start++;
+            }
+            if (quoted[field] || start == end || end - start > 10) {
+                return Integer.parseInt(getString(field).trim());
+            }
+            long value = 0;
+            for (long position = start; position < end; position++) {
+                int digit = at(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Integer.parseInt(getString(field).trim());
+                }
+                value = value * 10 + digit;
+            }
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                return Integer.parseInt(getString(field).trim());
+            }
+            return (int) value;
+        }
+
+        // Same result as Money.parseCents, which handles anything but plain decimals
+        public long getCents(int field) {
+            long start = starts[field];
+            long end = ends[field];
+            while (start < end && at(start) == ' ') {
+                start++;
+            }
+            while (end > start && at(end - 1) == ' ') {
+                end--;
+            }
+            boolean negative = start < end && at(start) == '-';
+            if (negative) {
+                start++;
+            }
+            if (quoted[field] || start == end) {
+                return Money.parseCents(getString(field));
+            }
+            long units = 0;
+            int integerDigits = 0;
+            int fractionDigits = 0;
+            long cents = 0;
+            boolean roundUp = false;
+            boolean point = false;
+            for (long position = start; position < end; position++) {
+                byte b = at(position);
+                if (b == '.' && !point) {
+                    point = true;
+                    continue;
+                }
+                int digit = b - '0';
+                // Sixteen integer digits still fit in a long once scaled to cents
+                if (digit < 0 || digit > 9 || (!point && integerDigits == 16)) {
+                    return Money.parseCents(getString(field));
+                }
+                if (!point) {
+                    units = units * 10 + digit;
+                    integerDigits++;
+                } else {
+                    // HALF_UP only looks at the first digit past the cents
+                    if (fractionDigits < 2) {
+                        cents = cents * 10 + digit;
+                    } else if (fractionDigits == 2) {
+                        roundUp = digit >= 5;
+                    }
+                    fractionDigits++;
+                }
+            }
+            if (integerDigits == 0 && fractionDigits == 0) {
+                return Money.parseCents(getString(field));
+            }
+            if (fractionDigits == 1) {
+                cents *= 10;
+            }
+            long value = units * 100 + cents + (roundUp ? 1 : 0);
+            return negative ? -value : value;
+        }
+
+        private int copy(int field) {
+            long start = starts[field];
+            int length = (int) (ends[field] - start);
+            ensureScratch(length);
+            int segment = (int) (start >>> SEGMENT_SHIFT);
+            int offset = (int) (start & SEGMENT_MASK);
+            if (offset + length <= segments[segment].capacity()) {
+                segments[segment].get(offset, scratch, 0, length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    scratch[i] = at(start + i);
+                }
+            }
+            return length;
+        }
+
+        private int put(int length, byte b) {
+            ensureScratch(length + 1);
+            scratch[length] = b;
+            return length + 1;
+        }
+
+        private void ensureScratch(int length) {
+            if (length > scratch.length) {
+                scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+            }
+        }
+    }
+}
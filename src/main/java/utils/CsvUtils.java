@@ -7,101 +7,282 @@ import models.Product;
 import dao.ProductDAO;
 
 public class CsvUtils {
+    private static final int PROGRESS_ROWS = 4096;
     
     public static void exportToCsv(List<Product> products, File file) throws IOException {
-        try (PrintWriter writer = new PrintWriter(file)) {
-            // Write header
-            writer.println("ID,Name,Description,Price,Quantity,Sold");
-            
-            // Write data
+        exportToCsv(products, file, Arrays.asList(CsvColumn.values()), false);
+    }
+
+    /**
+     * Streams the products to the file, one row at a time, with the given
+     * columns in the given order. Pass a ProductDAO snapshot to export a
+     * consistent catalog without copying it. Returns the number of rows.
+     */
+    public static int exportToCsv(Iterable<Product> products, File file, List<CsvColumn> columns, boolean gzip) throws IOException {
+        return exportToCsv(products, file, columns, gzip, new JobContext());
+    }
+
+    // A failed or cancelled export deletes the partly written file
+    public static int exportToCsv(Iterable<Product> products, File file, List<CsvColumn> columns, boolean gzip,
+                                  JobContext context) throws IOException {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("No columns selected");
+        }
+        if (products instanceof Collection) {
+            context.setTotalRows(((Collection<Product>) products).size());
+        }
+        CsvColumn[] order = columns.toArray(new CsvColumn[0]);
+        int rows = 0;
+        long reported = 0;
+        CsvWriter writer = CsvWriter.open(file, gzip);
+        try (writer) {
+            for (CsvColumn column : order) {
+                writer.writeString(column.getHeader());
+            }
+            writer.endRow();
+
             for (Product product : products) {
-                writer.println(
-                    product.getId() + "," +
-                    escapeCSV(product.getName()) + "," +
-                    escapeCSV(product.getDescription()) + "," +
-                    product.getPrice() + "," +
-                    product.getQuantity() + "," +
-                    product.getSold()
-                );
+                for (CsvColumn column : order) {
+                    switch (column) {
+                        case ID: writer.writeLong(product.getId()); break;
+                        case NAME: writer.writeString(product.getName()); break;
+                        case DESCRIPTION: writer.writeString(product.getDescription()); break;
+                        case PRICE: writer.writeCents(product.getPriceCents()); break;
+                        case QUANTITY: writer.writeLong(product.getQuantity()); break;
+                        case SOLD: writer.writeLong(product.getSold()); break;
+                        case CATEGORY: writer.writeString(product.getCategory()); break;
+                        case SUPPLIER_ID: writer.writeLong(product.getSupplierId()); break;
+                        case REORDER_LEVEL: writer.writeLong(product.getReorderLevel()); break;
+                        default: throw new IllegalStateException("Unhandled column " + column);
+                    }
+                }
+                writer.endRow();
+                if (++rows % PROGRESS_ROWS == 0) {
+                    context.addRows(PROGRESS_ROWS);
+                    context.addBytes(writer.getBytesWritten() - reported);
+                    reported = writer.getBytesWritten();
+                    context.checkCancelled();
+                }
             }
+            context.addRows(rows % PROGRESS_ROWS);
+            context.addBytes(writer.getBytesWritten() - reported);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
         }
+        return rows;
     }
-    
-    public static List<Product> importFromCsv(File file, ProductDAO productDAO) throws IOException {
-        List<Product> importedProducts = new ArrayList<>();
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            // Skip header
-            reader.readLine();
-            
-            while ((line = reader.readLine()) != null) {
-                String[] data = parseCSVLine(line);
-                if (data.length >= 6) {
-                    Product product = new Product(
-                        Integer.parseInt(data[0]),
-                        data[1],
-                        data[2],
-                        Double.parseDouble(data[3]),
-                        Integer.parseInt(data[4]),
-                        Integer.parseInt(data[5])
-                    );
-                    importedProducts.add(product);
-                    // Check if the product already exists and update it, or add a new one
-                    Product existingProduct = productDAO.getProductById(product.getId());
-                    if (existingProduct != null) {
-                        productDAO.updateProduct(product);
-                    } else {
-                        productDAO.addProduct(product);
-                    }
+
+    /**
+     * Reads every row first, then adds or replaces the valid ones by id in a
+     * single bulk upsert, so the whole file is persisted as one write. Rows
+     * that cannot be parsed are left out and listed in the report.
+     *
+     * Columns are found by their header names, in any order. ID, Name, Price
+     * and Quantity are required; Description, Sold, Category, Supplier ID and
+     * Reorder Level are optional.
+     */
+    public static ImportReport importFromCsv(File file, ProductDAO productDAO) throws IOException {
+        return importFromCsv(file, productDAO, new JobContext());
+    }
+
+    // Can be cancelled until parsing ends; the catalog is untouched until then
+    public static ImportReport importFromCsv(File file, ProductDAO productDAO, JobContext context) throws IOException {
+        ImportReport report = new ImportReport();
+        List<ParsedRow> parsed;
+        Columns columns;
+        context.setTotalBytes(file.length());
+        try (CsvReader reader = CsvReader.open(file)) {
+            if (reader.getHeader().isEmpty()) {
+                return report;
+            }
+            columns = new Columns(reader.getHeader());
+            if (columns.headerIsRecord) {
+                reader.readHeaderAsRecord();
+            }
+            parsed = reader.parallelMap(row -> parseRow(row, columns), context);
+        }
+        context.checkCancelled();
+
+        List<Product> rows = new ArrayList<>(parsed.size());
+        for (ParsedRow row : parsed) {
+            if (row.product != null) {
+                rows.add(row.product);
+            } else {
+                report.reject(row.lineNumber, row.error);
+                // A quoted field that ran on absorbed these lines; count them too
+                for (int line = row.lineNumber + 1; line < row.lineNumber + row.lineCount; line++) {
+                    report.reject(line, "part of the rejected record starting on line " + row.lineNumber);
                 }
             }
         }
-        
-        return importedProducts;
+        int inserted = productDAO.bulkUpsert(rows, columns::keepMissing);
+        report.setCounts(inserted, rows.size() - inserted);
+        return report;
     }
-    
-    private static String escapeCSV(String value) {
-        if (value == null) return "";
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
+
+    private static ParsedRow parseRow(CsvReader.Row row, Columns columns) {
+        if (row.isUnterminated()) {
+            return new ParsedRow(row, "a quoted field is never closed");
+        }
+        if (row.size() < columns.width) {
+            return new ParsedRow(row, "expected " + columns.width + " columns but found " + row.size());
+        }
+        try {
+            Product product = new Product(
+                parseCount(row, columns.id, "ID"),
+                row.getString(columns.name),
+                columns.description < 0 ? "" : row.getString(columns.description),
+                0.0,
+                parseCount(row, columns.quantity, "quantity"),
+                columns.sold < 0 ? 0 : parseCount(row, columns.sold, "sold"),
+                columns.category < 0 ? "" : row.getString(columns.category).trim(),
+                columns.supplierId < 0 ? 0 : parseCount(row, columns.supplierId, "supplier ID"),
+                columns.reorderLevel < 0 ? Product.DEFAULT_REORDER_LEVEL : parseCount(row, columns.reorderLevel, "reorder level")
+            );
+            product.setPriceCents(parsePrice(row, columns.price));
+            return new ParsedRow(product);
+        } catch (IllegalArgumentException e) {
+            return new ParsedRow(row, e.getMessage());
         }
-        return value;
     }
-    
-    private static String[] parseCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        StringBuilder currentField = new StringBuilder();
-        boolean inQuotes = false;
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (inQuotes) {
-                if (c == '\"') {
-                    if (i + 1 < line.length() && line.charAt(i + 1) == '\"') {
-                        // Two double quotes - add one quote to the field
-                        currentField.append('\"');
-                        i++;
-                    } else {
-                        // End of quoted section
-                        inQuotes = false;
-                    }
-                } else {
-                    currentField.append(c);
+
+    private static int parseCount(CsvReader.Row row, int field, String column) {
+        int parsed;
+        try {
+            parsed = row.getInt(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + column + " '" + row.getString(field) + "'");
+        }
+        if (parsed < 0) {
+            throw new IllegalArgumentException(column + " is negative: " + parsed);
+        }
+        return parsed;
+    }
+
+    private static long parsePrice(CsvReader.Row row, int field) {
+        long cents;
+        try {
+            cents = row.getCents(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid price '" + row.getString(field) + "'");
+        }
+        if (cents < 0) {
+            throw new IllegalArgumentException("price is negative: " + row.getString(field));
+        }
+        return cents;
+    }
+
+    // Column positions by header name; -1 for an optional column the file does not have
+    private static class Columns {
+        // The first line is data in the legacy layout, not a header
+        boolean headerIsRecord;
+        int id = -1;
+        int name = -1;
+        int description = -1;
+        int price = -1;
+        int quantity = -1;
+        int sold = -1;
+        int category = -1;
+        int supplierId = -1;
+        int reorderLevel = -1;
+        int width;
+
+        Columns(List<String> header) throws IOException {
+            for (int i = 0; i < header.size(); i++) {
+                // "Supplier ID", "supplier_id" and "SupplierId" all match
+                String key = header.get(i).toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "");
+                switch (key) {
+                    case "id": id = i; break;
+                    case "name": name = i; break;
+                    case "description": description = i; break;
+                    case "price": price = i; break;
+                    case "quantity": quantity = i; break;
+                    case "sold": sold = i; break;
+                    case "category": category = i; break;
+                    case "supplierid": supplierId = i; break;
+                    case "reorderlevel": reorderLevel = i; break;
+                    default: break;
                 }
-            } else {
-                if (c == '\"') {
-                    inQuotes = true;
-                } else if (c == ',') {
-                    result.add(currentField.toString());
-                    currentField.setLength(0);
-                } else {
-                    currentField.append(c);
+            }
+            String[] required = {"ID", "Name", "Price", "Quantity"};
+            int[] positions = {id, name, price, quantity};
+            if (id < 0 && name < 0 && price < 0 && quantity < 0) {
+                useLegacyLayout(header);
+                return;
+            }
+            for (int i = 0; i < required.length; i++) {
+                if (positions[i] < 0) {
+                    throw new IOException("The CSV header has no " + required[i] + " column");
                 }
             }
+            for (int position : new int[] {id, name, description, price, quantity, sold, category, supplierId, reorderLevel}) {
+                width = Math.max(width, position + 1);
+            }
+        }
+
+        // No header names we know: read the six columns imports have always had,
+        // ID, Name, Description, Price, Quantity, Sold. The first line is skipped
+        // as a header unless it starts with an ID, as it does in a headerless file
+        private void useLegacyLayout(List<String> firstLine) {
+            id = 0;
+            name = 1;
+            description = 2;
+            price = 3;
+            quantity = 4;
+            sold = 5;
+            category = -1;
+            supplierId = -1;
+            reorderLevel = -1;
+            width = 6;
+            try {
+                Integer.parseInt(firstLine.get(0).trim());
+                headerIsRecord = true;
+            } catch (NumberFormatException e) {
+                headerIsRecord = false;
+            }
+        }
+
+        // A product already in the catalog keeps its value for every column the
+        // file leaves out; the defaults parseRow filled in are only for new ones
+        void keepMissing(Product stored, Product imported) {
+            if (description < 0) {
+                imported.setDescription(stored.getDescription());
+            }
+            if (sold < 0) {
+                imported.setSold(stored.getSold());
+            }
+            if (category < 0) {
+                imported.setCategoryCode(stored.getCategoryCode());
+            }
+            if (supplierId < 0) {
+                imported.setSupplierId(stored.getSupplierId());
+            }
+            if (reorderLevel < 0) {
+                imported.setReorderLevel(stored.getReorderLevel());
+            }
+        }
+    }
+
+    private static class ParsedRow {
+        final Product product;
+        final int lineNumber;
+        final int lineCount;
+        final String error;
+
+        ParsedRow(Product product) {
+            this(product, 0, 0, null);
+        }
+
+        ParsedRow(CsvReader.Row row, String error) {
+            this(null, row.getLineNumber(), row.getLineCount(), error);
+        }
+
+        private ParsedRow(Product product, int lineNumber, int lineCount, String error) {
+            this.product = product;
+            this.lineNumber = lineNumber;
+            this.lineCount = lineCount;
+            this.error = error;
         }
-        
-        result.add(currentField.toString());
-        return result.toArray(new String[0]);
     }
 }
@@ -0,0 +1,192 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes UTF-8 CSV by encoding fields straight into one reused buffer, which
+ * goes to the file in large channel writes. Memory use does not grow with the
+ * number of rows. Fields are quoted only when they hold a comma, quote or
+ * line break.
+ */
+public class CsvWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // Longest encoding of one char (3 bytes) plus room for a closing quote
+    private static final int MAX_CHAR_BYTES = 4;
+    private static final int MAX_NUMBER_BYTES = 24;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long drainedBytes;
+    private boolean rowStarted;
+
+    private CsvWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public static CsvWriter open(File file, boolean gzip) throws IOException {
+        if (gzip) {
+            return new CsvWriter(Channels.newChannel(new GZIPOutputStream(new FileOutputStream(file), 1 << 16)));
+        }
+        return new CsvWriter(FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    // Null is written as an empty field
+    public void writeString(String value) throws IOException {
+        separate();
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        boolean quote = needsQuotes(value);
+        if (quote) {
+            put((byte) '"');
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (buffer.remaining() < MAX_CHAR_BYTES) {
+                drain();
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' && quote) {
+                    buffer.put((byte) '"');
+                }
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, as String.getBytes would write it
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        if (quote) {
+            put((byte) '"');
+        }
+    }
+
+    public void writeLong(long value) throws IOException {
+        separate();
+        if (buffer.remaining() < MAX_NUMBER_BYTES) {
+            drain();
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                // Has no positive counterpart
+                putDigits(-(value / 10), 1);
+                buffer.put((byte) ('0' - value % 10));
+                return;
+            }
+            value = -value;
+        }
+        putDigits(value, 1);
+    }
+
+    // As a plain decimal with two places, e.g. 12.50 or -0.05
+    public void writeCents(long cents) throws IOException {
+        separate();
+        if (buffer.remaining() < MAX_NUMBER_BYTES) {
+            drain();
+        }
+        if (cents < 0) {
+            buffer.put((byte) '-');
+            if (cents == Long.MIN_VALUE) {
+                putDigits(-(cents / 100), 1);
+                buffer.put((byte) '.');
+                putDigits(-(cents % 100), 2);
+                return;
+            }
+            cents = -cents;
+        }
+        putDigits(cents / 100, 1);
+        buffer.put((byte) '.');
+        putDigits(cents % 100, 2);
+    }
+
+    // Encoded bytes so far, before any compression
+    public long getBytesWritten() {
+        return drainedBytes + buffer.position();
+    }
+
+    public void endRow() throws IOException {
+        put((byte) '\n');
+        rowStarted = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void separate() throws IOException {
+        if (rowStarted) {
+            put((byte) ',');
+        }
+        rowStarted = true;
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(b);
+    }
+
+    // Writes a non-negative value with at least minDigits digits
+    private void putDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    private void drain() throws IOException {
+        drainedBytes += buffer.position();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
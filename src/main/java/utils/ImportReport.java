@@ -0,0 +1,65 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ImportReport {
+    private int inserted;
+    private int updated;
+    private final List<Rejection> rejected = new ArrayList<>();
+
+    ImportReport() {
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    // In file order
+    public List<Rejection> getRejected() {
+        return Collections.unmodifiableList(rejected);
+    }
+
+    void setCounts(int inserted, int updated) {
+        this.inserted = inserted;
+        this.updated = updated;
+    }
+
+    void reject(int lineNumber, String reason) {
+        rejected.add(new Rejection(lineNumber, reason));
+    }
+
+    @Override
+    public String toString() {
+        return inserted + " inserted, " + updated + " updated, " + rejected.size() + " rejected";
+    }
+
+    public static class Rejection {
+        private final int lineNumber;
+        private final String reason;
+
+        Rejection(int lineNumber, String reason) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+        }
+
+        // 1-based, counting the header line
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + reason;
+        }
+    }
+}
@@ -7,12 +7,14 @@ import models.Product;
 public class InventoryUtils {
     
     public static double calculateTotalInventoryValue(List<Product> products) {
-        return products.stream()
-            .mapToDouble(product -> product.getPrice() * product.getQuantity())
-            .sum();
+        long total = 0;
+        for (Product product : products) {
+            total += product.getPriceCents() * product.getQuantity();
+        }
+        return Money.toDouble(total);
     }
     
     public static String formatCurrency(double amount) {
-        return String.format("$%.2f", amount);
+        return Money.format(Money.toCents(amount));
     }
 }
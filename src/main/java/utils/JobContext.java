@@ -0,0 +1,94 @@
+package utils;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress and cancellation for one long-running operation. The operation
+ * adds to the counters as it goes, from any number of threads, and calls
+ * checkCancelled() only at points where stopping leaves the data as it was.
+ * Other threads read the counters and may cancel.
+ */
+public class JobContext {
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private volatile long totalRows;
+    private volatile long totalBytes;
+    private volatile long startNanos;
+    private volatile boolean cancelled;
+
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public long getElapsedMillis() {
+        return startNanos == 0 ? 0 : (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public void addRows(long count) {
+        rows.add(count);
+    }
+
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+
+    // For jobs that produce paged documents
+    public void addPages(long count) {
+        pages.add(count);
+    }
+
+    public long getPages() {
+        return pages.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    // Between 0 and 1, or -1 while no total is known
+    public double getFraction() {
+        if (totalBytes > 0) {
+            return Math.min(1.0, (double) getBytes() / totalBytes);
+        }
+        if (totalRows > 0) {
+            return Math.min(1.0, (double) getRows() / totalRows);
+        }
+        return -1;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Cancelled");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money held as a whole number of cents in a long, so that sums
+ * are exact. Formatting appends to a caller-supplied StringBuilder and does
+ * not go through String.format.
+ */
+public class Money {
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    // Parses user input such as "12.5" or "12.345" exactly, rounding half up to the cent
+    public static long parseCents(String text) {
+        try {
+            return new BigDecimal(text.trim()).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    // Same layout as String.format("$%.2f"), e.g. "$1234.50" and "$-0.05"
+    public static StringBuilder appendTo(StringBuilder sb, long cents) {
+        sb.append('$');
+        if (cents < 0) {
+            sb.append('-');
+            if (cents == Long.MIN_VALUE) {
+                return sb.append("92233720368547758.08");
+            }
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        sb.append(cents / 100).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+}
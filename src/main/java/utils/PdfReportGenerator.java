@@ -0,0 +1,184 @@
+package utils;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.ColumnText;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
+import com.itextpdf.text.pdf.PdfWriter;
+import dao.ProductDAO;
+import models.Product;
+
+/**
+ * Stock report as a PDF: inventory value and totals, top sellers, products at
+ * their reorder point and the stock level of every product. Long tables are
+ * marked incomplete and added to the document every CHUNK_ROWS rows, which
+ * lays those rows out, writes the finished pages to the output stream and
+ * drops them from the table, so memory use stays flat however long the
+ * catalog is.
+ */
+public class PdfReportGenerator {
+    private static final int CHUNK_ROWS = 500;
+    private static final int TOP_SELLERS = 10;
+
+    private static final Font TITLE_FONT = new Font(Font.FontFamily.HELVETICA, 18, Font.BOLD);
+    private static final Font SECTION_FONT = new Font(Font.FontFamily.HELVETICA, 13, Font.BOLD);
+    private static final Font HEADER_FONT = new Font(Font.FontFamily.HELVETICA, 9, Font.BOLD);
+    private static final Font CELL_FONT = new Font(Font.FontFamily.HELVETICA, 9);
+
+    private static final String[] STOCK_HEADERS = {"ID", "Name", "Category", "Quantity", "Reorder Level", "Price", "Stock Value"};
+    private static final float[] STOCK_WIDTHS = {1.2f, 5f, 3f, 1.6f, 1.6f, 2f, 2.4f};
+
+    public static void generatePdfReport(ProductDAO productDAO, File file) throws IOException {
+        generatePdfReport(productDAO, file, new JobContext());
+    }
+
+    // A failed or cancelled report leaves no file behind
+    public static void generatePdfReport(ProductDAO productDAO, File file, JobContext context) throws IOException {
+        List<Product> products = productDAO.snapshot();
+        List<Product> lowStock = productDAO.getProductsAtReorderPoint();
+        List<Product> topSellers = productDAO.getTopSellingProducts(TOP_SELLERS);
+        context.setTotalRows(products.size() + lowStock.size() + topSellers.size());
+
+        long totalUnits = 0;
+        long totalValue = 0;
+        for (Product product : products) {
+            totalUnits += product.getQuantity();
+            totalValue += product.getQuantity() * product.getPriceCents();
+        }
+
+        Document document = new Document(PageSize.A4, 36, 36, 36, 54);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setPageEvent(new PageFooter(context));
+            document.open();
+
+            document.add(new Paragraph("Inventory Stock Report", TITLE_FONT));
+            document.add(new Paragraph("Generated "
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")), CELL_FONT));
+
+            section(document, "Summary");
+            PdfPTable summary = new PdfPTable(new float[] {3f, 2f});
+            summary.setWidthPercentage(50);
+            summary.setHorizontalAlignment(Element.ALIGN_LEFT);
+            summaryRow(summary, "Products", String.format("%,d", products.size()));
+            summaryRow(summary, "Units in stock", String.format("%,d", totalUnits));
+            summaryRow(summary, "Inventory value", Money.format(totalValue));
+            summaryRow(summary, "Products at reorder point", String.format("%,d", lowStock.size()));
+            document.add(summary);
+
+            section(document, "Top Sellers");
+            PdfPTable top = new PdfPTable(new float[] {1.2f, 5f, 3f, 1.6f, 2.4f});
+            startTable(top, new String[] {"ID", "Name", "Category", "Sold", "Sales"});
+            for (Product product : topSellers) {
+                text(top, String.valueOf(product.getId()), Element.ALIGN_RIGHT);
+                text(top, product.getName(), Element.ALIGN_LEFT);
+                text(top, product.getCategory(), Element.ALIGN_LEFT);
+                text(top, String.format("%,d", product.getSold()), Element.ALIGN_RIGHT);
+                text(top, Money.format(product.getSold() * product.getPriceCents()), Element.ALIGN_RIGHT);
+            }
+            context.addRows(topSellers.size());
+            finishTable(document, top);
+
+            section(document, "Low Stock");
+            stockTable(document, lowStock, context);
+
+            document.newPage();
+            section(document, "Stock Levels");
+            stockTable(document, products, context);
+
+            document.close();
+        } catch (DocumentException e) {
+            file.delete();
+            throw new IOException("Could not write PDF report: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    // Streams the rows into the document a chunk at a time
+    private static void stockTable(Document document, List<Product> products, JobContext context) throws DocumentException {
+        PdfPTable table = new PdfPTable(STOCK_WIDTHS);
+        startTable(table, STOCK_HEADERS);
+        int rows = 0;
+        for (Product product : products) {
+            text(table, String.valueOf(product.getId()), Element.ALIGN_RIGHT);
+            text(table, product.getName(), Element.ALIGN_LEFT);
+            text(table, product.getCategory(), Element.ALIGN_LEFT);
+            text(table, String.format("%,d", product.getQuantity()), Element.ALIGN_RIGHT);
+            text(table, String.valueOf(product.getReorderLevel()), Element.ALIGN_RIGHT);
+            text(table, Money.format(product.getPriceCents()), Element.ALIGN_RIGHT);
+            text(table, Money.format(product.getQuantity() * product.getPriceCents()), Element.ALIGN_RIGHT);
+            if (++rows % CHUNK_ROWS == 0) {
+                document.add(table);
+                context.addRows(CHUNK_ROWS);
+                context.checkCancelled();
+            }
+        }
+        context.addRows(rows % CHUNK_ROWS);
+        finishTable(document, table);
+    }
+
+    // The header row repeats on every page the table runs onto
+    private static void startTable(PdfPTable table, String[] headers) {
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        table.setComplete(false);
+        for (String header : headers) {
+            PdfPCell cell = new PdfPCell(new Phrase(header, HEADER_FONT));
+            cell.setGrayFill(0.85f);
+            table.addCell(cell);
+        }
+    }
+
+    private static void finishTable(Document document, PdfPTable table) throws DocumentException {
+        table.setComplete(true);
+        document.add(table);
+    }
+
+    private static void text(PdfPTable table, String value, int alignment) {
+        PdfPCell cell = new PdfPCell(new Phrase(value == null ? "" : value, CELL_FONT));
+        cell.setHorizontalAlignment(alignment);
+        table.addCell(cell);
+    }
+
+    private static void summaryRow(PdfPTable table, String label, String value) {
+        table.addCell(new PdfPCell(new Phrase(label, HEADER_FONT)));
+        text(table, value, Element.ALIGN_RIGHT);
+    }
+
+    private static void section(Document document, String title) throws DocumentException {
+        Paragraph paragraph = new Paragraph(title, SECTION_FONT);
+        paragraph.setSpacingBefore(12);
+        paragraph.setSpacingAfter(6);
+        document.add(paragraph);
+    }
+
+    // Numbers each page and counts it for the job's pages/s
+    private static class PageFooter extends PdfPageEventHelper {
+        private final JobContext context;
+
+        PageFooter(JobContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public void onEndPage(PdfWriter writer, Document document) {
+            ColumnText.showTextAligned(writer.getDirectContent(), Element.ALIGN_CENTER,
+                new Phrase("Page " + writer.getPageNumber(), CELL_FONT),
+                (document.left() + document.right()) / 2, document.bottom() - 20, 0);
+            context.addPages(1);
+        }
+    }
+}
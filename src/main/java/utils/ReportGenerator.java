@@ -0,0 +1,222 @@
+package utils;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import dao.ProductDAO;
+import models.Product;
+import models.Supplier;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Inventory and sales reports. The Excel report is written with POI's
+ * streaming SXSSF API: only the last ROW_WINDOW rows of a sheet stay in
+ * memory and older rows go to a compressed temp file, so the size of the
+ * catalog does not decide the heap needed.
+ */
+public class ReportGenerator {
+    private static final int ROW_WINDOW = 500;
+    // Excel's limit is 1,048,576 rows per sheet, one of which is the header
+    private static final int MAX_SHEET_ROWS = 1_048_575;
+    private static final int PROGRESS_ROWS = 4096;
+
+    private static final String[] PRODUCT_HEADERS = {
+        "ID", "Name", "Category", "Supplier", "Price", "Quantity", "Sold", "Stock Value", "Sales"
+    };
+
+    public static void generateExcelReport(ProductDAO productDAO, List<Supplier> suppliers, File file) throws IOException {
+        generateExcelReport(productDAO, suppliers, file, new JobContext());
+    }
+
+    /**
+     * Writes a workbook with a summary sheet, one row per product, sales by
+     * category and totals per supplier. The product rows, summary and
+     * supplier totals come from one pass over a single snapshot. A failed or
+     * cancelled report leaves no file behind.
+     */
+    public static void generateExcelReport(ProductDAO productDAO, List<Supplier> suppliers, File file,
+                                           JobContext context) throws IOException {
+        List<Product> products = productDAO.snapshot();
+        context.setTotalRows(products.size());
+        Map<Integer, String> supplierNames = new HashMap<>();
+        for (Supplier supplier : suppliers) {
+            supplierNames.put(supplier.getId(), supplier.getName());
+        }
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = workbook.createCellStyle();
+            Font bold = workbook.createFont();
+            bold.setBold(true);
+            headerStyle.setFont(bold);
+            CellStyle moneyStyle = workbook.createCellStyle();
+            moneyStyle.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00"));
+
+            // Filled in after the product sheets, from the same pass
+            SXSSFSheet summary = workbook.createSheet("Summary");
+
+            long totalUnits = 0;
+            long totalSold = 0;
+            long totalValue = 0;
+            long totalSales = 0;
+            Map<Integer, long[]> bySupplier = new TreeMap<>();
+            SXSSFSheet sheet = null;
+            int sheetNumber = 0;
+            int rowIndex = 0;
+            int rows = 0;
+            for (Product product : products) {
+                if (sheet == null || rowIndex > MAX_SHEET_ROWS) {
+                    sheetNumber++;
+                    sheet = workbook.createSheet(sheetNumber == 1 ? "Products" : "Products " + sheetNumber);
+                    writeHeader(sheet, headerStyle, PRODUCT_HEADERS);
+                    sheet.createFreezePane(0, 1);
+                    sheet.setColumnWidth(1, 32 * 256);
+                    sheet.setColumnWidth(2, 18 * 256);
+                    sheet.setColumnWidth(3, 24 * 256);
+                    rowIndex = 1;
+                }
+                long value = product.getQuantity() * product.getPriceCents();
+                long sales = product.getSold() * product.getPriceCents();
+                Row row = sheet.createRow(rowIndex++);
+                row.createCell(0).setCellValue(product.getId());
+                row.createCell(1).setCellValue(product.getName());
+                row.createCell(2).setCellValue(product.getCategory());
+                row.createCell(3).setCellValue(supplierName(supplierNames, product.getSupplierId()));
+                money(row, 4, product.getPriceCents(), moneyStyle);
+                row.createCell(5).setCellValue(product.getQuantity());
+                row.createCell(6).setCellValue(product.getSold());
+                money(row, 7, value, moneyStyle);
+                money(row, 8, sales, moneyStyle);
+
+                totalUnits += product.getQuantity();
+                totalSold += product.getSold();
+                totalValue += value;
+                totalSales += sales;
+                if (product.getSupplierId() > 0) {
+                    long[] totals = bySupplier.computeIfAbsent(product.getSupplierId(), k -> new long[5]);
+                    totals[0]++;
+                    totals[1] += product.getQuantity();
+                    totals[2] += product.getSold();
+                    totals[3] += value;
+                    totals[4] += sales;
+                }
+                if (++rows % PROGRESS_ROWS == 0) {
+                    context.addRows(PROGRESS_ROWS);
+                    context.checkCancelled();
+                }
+            }
+            context.addRows(rows % PROGRESS_ROWS);
+
+            writeCategorySheet(workbook, productDAO.getCategorySalesCents(), headerStyle, moneyStyle);
+            writeSupplierSheet(workbook, bySupplier, supplierNames, headerStyle, moneyStyle);
+
+            String[][] figures = {
+                {"Generated", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))},
+                {"Products", null},
+                {"Units in Stock", null},
+                {"Units Sold", null},
+                {"Inventory Value", null},
+                {"Sales", null}
+            };
+            long[] values = {0, products.size(), totalUnits, totalSold, totalValue, totalSales};
+            summary.setColumnWidth(0, 20 * 256);
+            summary.setColumnWidth(1, 20 * 256);
+            for (int i = 0; i < figures.length; i++) {
+                Row row = summary.createRow(i);
+                Cell label = row.createCell(0);
+                label.setCellValue(figures[i][0]);
+                label.setCellStyle(headerStyle);
+                if (figures[i][1] != null) {
+                    row.createCell(1).setCellValue(figures[i][1]);
+                } else if (i >= 4) {
+                    money(row, 1, values[i], moneyStyle);
+                } else {
+                    row.createCell(1).setCellValue(values[i]);
+                }
+            }
+
+            context.checkCancelled();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                workbook.write(out);
+            } catch (IOException | RuntimeException e) {
+                file.delete();
+                throw e;
+            }
+        } finally {
+            // Removes the temp files behind the streamed sheets
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static void writeCategorySheet(SXSSFWorkbook workbook, Map<String, Long> salesCents,
+                                           CellStyle headerStyle, CellStyle moneyStyle) {
+        SXSSFSheet sheet = workbook.createSheet("Sales by Category");
+        writeHeader(sheet, headerStyle, new String[] {"Category", "Sales"});
+        sheet.setColumnWidth(0, 24 * 256);
+        sheet.setColumnWidth(1, 16 * 256);
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(salesCents.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        int rowIndex = 1;
+        for (Map.Entry<String, Long> entry : entries) {
+            Row row = sheet.createRow(rowIndex++);
+            row.createCell(0).setCellValue(entry.getKey());
+            money(row, 1, entry.getValue(), moneyStyle);
+        }
+    }
+
+    private static void writeSupplierSheet(SXSSFWorkbook workbook, Map<Integer, long[]> bySupplier,
+                                           Map<Integer, String> supplierNames,
+                                           CellStyle headerStyle, CellStyle moneyStyle) {
+        SXSSFSheet sheet = workbook.createSheet("By Supplier");
+        writeHeader(sheet, headerStyle, new String[] {"Supplier ID", "Supplier", "Products", "Units in Stock", "Units Sold", "Stock Value", "Sales"});
+        sheet.setColumnWidth(1, 24 * 256);
+        int rowIndex = 1;
+        for (Map.Entry<Integer, long[]> entry : bySupplier.entrySet()) {
+            long[] totals = entry.getValue();
+            Row row = sheet.createRow(rowIndex++);
+            row.createCell(0).setCellValue(entry.getKey());
+            row.createCell(1).setCellValue(supplierName(supplierNames, entry.getKey()));
+            row.createCell(2).setCellValue(totals[0]);
+            row.createCell(3).setCellValue(totals[1]);
+            row.createCell(4).setCellValue(totals[2]);
+            money(row, 5, totals[3], moneyStyle);
+            money(row, 6, totals[4], moneyStyle);
+        }
+    }
+
+    private static void writeHeader(SXSSFSheet sheet, CellStyle style, String[] headers) {
+        Row row = sheet.createRow(0);
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = row.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(style);
+        }
+    }
+
+    // Excel keeps numbers as doubles, so cents become a two-place amount
+    private static void money(Row row, int column, long cents, CellStyle style) {
+        Cell cell = row.createCell(column);
+        cell.setCellValue(Money.toDouble(cents));
+        cell.setCellStyle(style);
+    }
+
+    private static String supplierName(Map<Integer, String> supplierNames, int supplierId) {
+        if (supplierId <= 0) {
+            return "";
+        }
+        String name = supplierNames.get(supplierId);
+        return name != null ? name : "Supplier " + supplierId;
+    }
+}
@@ -0,0 +1,56 @@
+package dao;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+import models.Product;
+
+/**
+ * Dashboard figures three ways: the stream recompute the DAO used to run,
+ * the full recompute behind verifyAggregates, and the running aggregates the
+ * dashboard reads. Not a unit test; run it with the test classpath, e.g.
+ * java -cp target/classes:target/test-classes dao.AggregatesBenchmark 1000000
+ */
+public class AggregatesBenchmark {
+    private static final String[] CATEGORIES = {"Tools", "Toys", "Food", "Garden", "Books", "Music", "Home", "Sport"};
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File directory = Files.createTempDirectory("aggregates").toFile();
+        ProductDAO dao = new ProductDAO(ProductStorage.SNAPSHOT, directory);
+        Random random = new Random(1);
+        List<Product> batch = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            batch.add(new Product(id, "Product " + id, "", 1 + random.nextInt(10000) / 100.0, random.nextInt(500),
+                random.nextInt(100), CATEGORIES[random.nextInt(CATEGORIES.length)], 0, 5));
+        }
+        dao.bulkUpsert(batch);
+        List<Product> products = dao.getAllProducts();
+
+        double sink = 0;
+        for (int round = 0; round < 15; round++) {
+            long start = System.nanoTime();
+            sink += products.stream().mapToDouble(p -> p.getPrice() * p.getQuantity()).sum();
+            sink += products.stream()
+                .collect(Collectors.groupingBy(Product::getCategory, Collectors.summingDouble(p -> p.getPrice() * p.getSold())))
+                .size();
+            long streams = System.nanoTime();
+            sink += dao.verifyAggregates().size();
+            long recompute = System.nanoTime();
+            sink += dao.getTotalInventoryValueCents();
+            sink += dao.getCategorySalesCents().size();
+            long running = System.nanoTime();
+            if (round >= 10) {
+                System.out.printf("%d products: streams %.2f ms, recompute %.2f ms, running aggregates %.4f ms%n",
+                    count, (streams - start) / 1e6, (recompute - streams) / 1e6, (running - recompute) / 1e6);
+            }
+        }
+        System.out.println(sink > 0 ? "" : "?");
+        dao.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,60 @@
+package dao;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import models.Product;
+
+/**
+ * Save and load time and file size of products.dat in the binary format
+ * against Java serialization, at 100k and 1M products. Not a unit test; run
+ * it with the test classpath, e.g.
+ * java -Xmx3g -cp target/classes:target/test-classes dao.CodecBenchmark
+ */
+public class CodecBenchmark {
+    private static final String[] CATEGORIES = {"Tools", "Toys", "Food", "Garden", "Books", "Music", "Home", "Sport"};
+
+    public static void main(String[] args) throws Exception {
+        File directory = Files.createTempDirectory("codec").toFile();
+        File binary = new File(directory, "products.dat");
+        File serialized = new File(directory, "products.ser");
+        for (int count : new int[] {100_000, 1_000_000}) {
+            Random random = new Random(1);
+            List<Product> products = new ArrayList<>(count);
+            for (int id = 1; id <= count; id++) {
+                products.add(new Product(id, "Product " + id, "Description of product " + id,
+                    1 + random.nextInt(10000) / 100.0, random.nextInt(500), random.nextInt(100),
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], random.nextInt(50), 5));
+            }
+
+            double[] best = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+            long sink = 0;
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                ProductCodec.writeAll(products, binary);
+                best[0] = Math.min(best[0], (System.nanoTime() - start) / 1e6);
+
+                start = System.nanoTime();
+                sink += ProductCodec.readAll(binary).size();
+                best[1] = Math.min(best[1], (System.nanoTime() - start) / 1e6);
+
+                start = System.nanoTime();
+                try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(serialized)))) {
+                    out.writeObject(products);
+                }
+                best[2] = Math.min(best[2], (System.nanoTime() - start) / 1e6);
+
+                // Through the codec's legacy path, as the DAO reads an old file
+                start = System.nanoTime();
+                sink += ProductCodec.readAll(serialized).size();
+                best[3] = Math.min(best[3], (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%,9d products: binary save %.0f ms, load %.0f ms, %,d bytes | "
+                    + "serialized save %.0f ms, load %.0f ms, %,d bytes%s%n",
+                count, best[0], best[1], binary.length(), best[2], best[3], serialized.length(), sink == 42 ? " " : "");
+        }
+        binary.delete();
+        serialized.delete();
+        directory.delete();
+    }
+}
@@ -0,0 +1,71 @@
+package dao;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import models.Product;
+
+/**
+ * Cost of getProductById and updateProduct at 10k, 100k and 1M products,
+ * next to the linear scan by id that the DAO used to do.
+ * Not a unit test; run it with the test classpath, e.g.
+ * java -Xmx2g -cp target/classes:target/test-classes dao.LookupBenchmark
+ */
+public class LookupBenchmark {
+    private static final int LOOKUPS = 2_000_000;
+    private static final int UPDATES = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        for (int count : new int[] {10_000, 100_000, 1_000_000}) {
+            File directory = Files.createTempDirectory("lookup").toFile();
+            ProductDAO dao = new ProductDAO(ProductStorage.JOURNAL, directory);
+            List<Product> batch = new ArrayList<>(count);
+            for (int id = 1; id <= count; id++) {
+                batch.add(new Product(id, "Product " + id, "", 9.99, 100, 0, "Tools", 0, 5));
+            }
+            dao.bulkUpsert(batch);
+
+            Random random = new Random(1);
+            long sink = 0;
+            double lookupNanos = 0;
+            double updateNanos = 0;
+            double scanNanos = 0;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < LOOKUPS; i++) {
+                    sink += dao.getProductById(1 + random.nextInt(count)).getQuantity();
+                }
+                lookupNanos = (System.nanoTime() - start) / (double) LOOKUPS;
+
+                start = System.nanoTime();
+                for (int i = 0; i < UPDATES; i++) {
+                    Product product = dao.getProductById(1 + random.nextInt(count));
+                    product.setQuantity(product.getQuantity() + 1);
+                    dao.updateProduct(product);
+                }
+                updateNanos = (System.nanoTime() - start) / (double) UPDATES;
+
+                List<Product> products = dao.getAllProducts();
+                int scans = 20_000_000 / count;
+                start = System.nanoTime();
+                for (int i = 0; i < scans; i++) {
+                    int id = 1 + random.nextInt(count);
+                    for (Product product : products) {
+                        if (product.getId() == id) {
+                            sink += product.getQuantity();
+                            break;
+                        }
+                    }
+                }
+                scanNanos = (System.nanoTime() - start) / (double) scans;
+            }
+            System.out.printf("%,9d products: lookup %.0f ns, update %.0f ns, linear scan %.0f ns%s%n",
+                count, lookupNanos, updateNanos, scanNanos, sink == 42 ? " " : "");
+            dao.close();
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package dao;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class PersistenceSchedulerTest {
+    @Test(timeout = 30_000)
+    public void failedFlushKeepsChangesQueuedAndRetries() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        PersistenceScheduler scheduler = new PersistenceScheduler("test", PersistenceScheduler.Mode.GROUP_COMMIT, 10, () -> {
+            if (attempts.incrementAndGet() <= 2) {
+                throw new IOException("disk full");
+            }
+        });
+        scheduler.changed(3);
+        while (scheduler.getLastFlushTime() == 0) {
+            Thread.sleep(5);
+        }
+        assertEquals(3, attempts.get());
+        assertEquals(0, scheduler.getQueueDepth());
+        scheduler.close();
+    }
+
+    @Test
+    public void failedSyncFlushLeavesTheChangeQueued() {
+        PersistenceScheduler scheduler = new PersistenceScheduler("test", PersistenceScheduler.Mode.SYNC, 0, () -> {
+            throw new IOException("disk full");
+        });
+        scheduler.changed(1);
+        scheduler.changed(1);
+        assertEquals(2, scheduler.getQueueDepth());
+        scheduler.close();
+    }
+
+    @Test
+    public void closeFlushesAndRejectsLaterChanges() {
+        AtomicInteger flushes = new AtomicInteger();
+        PersistenceScheduler scheduler = new PersistenceScheduler("test", PersistenceScheduler.Mode.GROUP_COMMIT, 60_000,
+            flushes::incrementAndGet);
+        scheduler.changed(2);
+        scheduler.close();
+        assertEquals(1, flushes.get());
+        assertEquals(0, scheduler.getQueueDepth());
+        try {
+            scheduler.changed(1);
+            fail("Expected a closed scheduler to refuse changes");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package dao;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import models.Product;
+import utils.BinaryIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProductCodecTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            Product product = new Product(id, "Product " + id, id % 7 == 0 ? "" : "Описание ✓ " + id, 0.0,
+                id % 5 == 0 ? -id : id * 1000, id % 11, id % 3 == 0 ? "Tools" : "Garden", id % 4, id % 9);
+            product.setPriceCents(id % 13 == 0 ? Long.MAX_VALUE / 3 : 99 + id);
+            products.add(product);
+        }
+        return products;
+    }
+
+    private static void assertSameProducts(List<Product> expected, List<Product> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Product a = expected.get(i);
+            Product b = actual.get(i);
+            String at = "product " + a.getId();
+            assertEquals(at, a.getId(), b.getId());
+            assertEquals(at, a.getName(), b.getName());
+            assertEquals(at, a.getDescription(), b.getDescription());
+            assertEquals(at, a.getPriceCents(), b.getPriceCents());
+            assertEquals(at, a.getQuantity(), b.getQuantity());
+            assertEquals(at, a.getSold(), b.getSold());
+            assertEquals(at, a.getCategory(), b.getCategory());
+            assertEquals(at, a.getSupplierId(), b.getSupplierId());
+            assertEquals(at, a.getReorderLevel(), b.getReorderLevel());
+        }
+    }
+
+    @Test
+    public void roundTripsAcrossBlocks() throws IOException {
+        List<Product> products = products(10_000);
+        File file = new File(folder.getRoot(), "products.dat");
+        ProductCodec.writeAll(products, file);
+        assertSameProducts(products, ProductCodec.readAll(file));
+    }
+
+    @Test
+    public void roundTripsAnEmptyCatalog() throws IOException {
+        File file = new File(folder.getRoot(), "products.dat");
+        ProductCodec.writeAll(Collections.emptyList(), file);
+        assertTrue(ProductCodec.readAll(file).isEmpty());
+    }
+
+    @Test
+    public void readsAndMigratesJavaSerializedFile() throws IOException {
+        List<Product> products = new ArrayList<>(products(500));
+        // The serialized form keeps the price as a double, exact only for everyday amounts
+        for (Product product : products) {
+            product.setPriceCents(99 + product.getId());
+        }
+        File file = new File(folder.getRoot(), "products.dat");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(products);
+        }
+        assertSameProducts(products, ProductCodec.readAll(file));
+
+        ProductDAO dao = new ProductDAO(ProductStorage.SNAPSHOT, folder.getRoot());
+        assertSameProducts(products, dao.getAllProducts());
+        dao.close();
+        assertFalse(BinaryIO.isJavaSerialized(file));
+        assertTrue(new File(folder.getRoot(), "products.dat.legacy").exists());
+        assertSameProducts(products, ProductCodec.readAll(file));
+    }
+
+    @Test
+    public void rejectsDamagedOrTruncatedFiles() throws IOException {
+        File file = new File(folder.getRoot(), "products.dat");
+        ProductCodec.writeAll(products(10_000), file);
+        long length = file.length();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(length / 2);
+            int b = raf.read();
+            raf.seek(length / 2);
+            raf.write(b ^ 0x40);
+        }
+        try {
+            ProductCodec.readAll(file);
+            fail("Expected a damaged block to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("checksum"));
+        }
+
+        ProductCodec.writeAll(products(10_000), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length - 5);
+        }
+        try {
+            ProductCodec.readAll(file);
+            fail("Expected a truncated file to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("truncated") || e.getMessage().contains("end marker"));
+        }
+    }
+}
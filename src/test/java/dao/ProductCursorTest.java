@@ -0,0 +1,103 @@
+package dao;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import models.Product;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProductCursorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProductDAO dao;
+
+    @Before
+    public void fill() throws IOException {
+        dao = new ProductDAO(ProductStorage.SNAPSHOT, folder.getRoot());
+        Random random = new Random(7);
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            Product product = new Product(0, "Name " + random.nextInt(300), "", 0.0, random.nextInt(50), random.nextInt(20));
+            product.setPriceCents(random.nextInt(1000));
+            batch.add(product);
+        }
+        dao.bulkUpsert(batch);
+    }
+
+    @After
+    public void close() {
+        dao.close();
+    }
+
+    private static List<Product> walk(ProductCursor cursor) {
+        List<Product> all = new ArrayList<>();
+        while (cursor.hasNext()) {
+            all.addAll(cursor.nextPage());
+        }
+        return all;
+    }
+
+    @Test
+    public void walksEveryOrderCompletelyAndInOrder() {
+        for (ProductSort sort : ProductSort.values()) {
+            List<Product> all = walk(dao.cursor(sort, 97));
+            assertEquals(sort.toString(), 2500, all.size());
+            if (sort.comparator() != null) {
+                for (int i = 1; i < all.size(); i++) {
+                    assertTrue(sort + " out of order at " + i, sort.comparator().compare(all.get(i - 1), all.get(i)) < 0);
+                }
+                assertEquals(dao.getProducts(1000, 50, sort), all.subList(1000, 1050));
+            } else {
+                assertEquals(new ArrayList<>(dao.getAllProducts()), all);
+            }
+        }
+    }
+
+    @Test
+    public void catalogCursorKeepsItsSnapshot() {
+        ProductCursor cursor = dao.cursor(ProductSort.CATALOG, 100);
+        List<Product> first = cursor.nextPage();
+        dao.deleteProduct(first.get(0).getId() + 500);
+        dao.addProduct(new Product(0, "Late", "", 1.0, 1, 0));
+        List<Product> all = new ArrayList<>(first);
+        all.addAll(walk(cursor));
+        assertEquals(2500, all.size());
+    }
+
+    @Test
+    public void sortedCursorSeesChangesWithoutRepeatsOrGaps() {
+        ProductCursor cursor = dao.cursor(ProductSort.QUANTITY, 100);
+        List<Product> seen = new ArrayList<>(cursor.nextPage());
+        Product last = seen.get(seen.size() - 1);
+        // Sorts before the cursor position, so it is not seen
+        dao.addProduct(new Product(0, "Early", "", 1.0, -1, 0));
+        // Sorts after it, so it is
+        Product late = new Product(0, "Late", "", 1.0, 1000, 0);
+        dao.addProduct(late);
+        seen.addAll(walk(cursor));
+        assertEquals(2501, seen.size());
+        assertEquals("Late", seen.get(seen.size() - 1).getName());
+        for (int i = 1; i < seen.size(); i++) {
+            assertTrue(ProductSort.QUANTITY.comparator().compare(seen.get(i - 1), seen.get(i)) < 0);
+        }
+        assertTrue(ProductSort.QUANTITY.comparator().compare(last, seen.get(100)) < 0);
+    }
+
+    @Test
+    public void sortedIndexFollowsUpdates() {
+        Product product = new Product(dao.getProducts(0, 1, ProductSort.SOLD).get(0));
+        product.setSold(10_000);
+        dao.updateProduct(product);
+        List<Product> bySold = dao.getProducts(2499, 1, ProductSort.SOLD);
+        assertEquals(product.getId(), bySold.get(0).getId());
+        assertEquals(2500, walk(dao.cursor(ProductSort.SOLD, 333)).size());
+    }
+}
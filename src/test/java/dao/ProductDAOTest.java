@@ -0,0 +1,189 @@
+package dao;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import models.OrderLine;
+import models.Product;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProductDAOTest {
+    private static final String[] CATEGORIES = {"Tools", "tools", "Toys", "", "Garden"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProductDAO open(ProductStorage storage) {
+        return new ProductDAO(storage, folder.getRoot());
+    }
+
+    private static Product product(int id, Random random) {
+        return new Product(id, "Product " + id, "", 1 + random.nextInt(1000) / 100.0, random.nextInt(50),
+            random.nextInt(20), CATEGORIES[random.nextInt(CATEGORIES.length)], 0, 5);
+    }
+
+    @Test
+    public void aggregatesMatchARecomputeAfterMixedChanges() {
+        ProductDAO dao = open(ProductStorage.SNAPSHOT);
+        Random random = new Random(7);
+        for (int id = 1; id <= 300; id++) {
+            dao.addProduct(product(0, random));
+        }
+        for (int i = 0; i < 2000; i++) {
+            int id = 1 + random.nextInt(320);
+            switch (random.nextInt(4)) {
+                case 0: dao.sell(id, 1 + random.nextInt(3)); break;
+                case 1: dao.restock(id, 1 + random.nextInt(10)); break;
+                case 2: dao.deleteProduct(id); break;
+                default:
+                    if (dao.getProductById(id) != null) {
+                        dao.updateProduct(product(id, random));
+                    }
+            }
+        }
+
+        assertEquals(Collections.emptyList(), dao.verifyAggregates());
+        long value = 0;
+        List<Integer> lowStock = new ArrayList<>();
+        for (Product product : dao.getAllProducts()) {
+            value += product.getQuantity() * product.getPriceCents();
+            if (product.getQuantity() <= 10) {
+                lowStock.add(product.getId());
+            }
+        }
+        assertEquals(value, dao.getTotalInventoryValueCents());
+        List<Integer> actualLowStock = new ArrayList<>();
+        for (Product product : dao.getLowStockProducts(10)) {
+            actualLowStock.add(product.getId());
+        }
+        assertEquals(lowStock, actualLowStock);
+        dao.close();
+    }
+
+    // Runs the task on each thread at once and fails on the first exception
+    private static void runConcurrently(int threads, Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 120_000)
+    public void concurrentSalesAndRestocksLoseNoUpdates() throws Exception {
+        ProductDAO dao = open(ProductStorage.JOURNAL);
+        for (int id = 1; id <= 4; id++) {
+            dao.addProduct(new Product(0, "Hot " + id, "", 1.00, 100, 0, "Tools", 0, 5));
+        }
+        int[] sold = new int[5];
+        int[] restocked = new int[5];
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger inconsistentReads = new AtomicInteger();
+
+        // Readers run alongside the writers and must never see stock below zero
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                for (Product product : dao.getAllProducts()) {
+                    if (product.getQuantity() < 0) {
+                        inconsistentReads.incrementAndGet();
+                    }
+                }
+                if (dao.getTotalInventoryValueCents() < 0) {
+                    inconsistentReads.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+
+        runConcurrently(8, () -> {
+            Random random = new Random(Thread.currentThread().getId());
+            int[] mySold = new int[5];
+            int[] myRestocked = new int[5];
+            for (int i = 0; i < 3000; i++) {
+                int id = 1 + random.nextInt(4);
+                int choice = random.nextInt(10);
+                if (choice < 6) {
+                    int quantity = 1 + random.nextInt(3);
+                    if (dao.sell(id, quantity) == StockResult.OK) {
+                        mySold[id] += quantity;
+                    }
+                } else if (choice < 9) {
+                    if (dao.restock(id, 2) == StockResult.OK) {
+                        myRestocked[id] += 2;
+                    }
+                } else {
+                    int other = 1 + id % 4;
+                    if (dao.placeOrder(Arrays.asList(new OrderLine(id, 1), new OrderLine(other, 2))).isCommitted()) {
+                        mySold[id] += 1;
+                        mySold[other] += 2;
+                    }
+                }
+            }
+            synchronized (sold) {
+                for (int id = 1; id <= 4; id++) {
+                    sold[id] += mySold[id];
+                    restocked[id] += myRestocked[id];
+                }
+            }
+            return null;
+        });
+        running.set(false);
+        reader.join();
+
+        assertEquals(0, inconsistentReads.get());
+        assertEquals(Collections.emptyList(), dao.verifyAggregates());
+        for (int id = 1; id <= 4; id++) {
+            Product product = dao.getProductById(id);
+            assertEquals(sold[id], product.getSold());
+            assertEquals(100 - sold[id] + restocked[id], product.getQuantity());
+        }
+        dao.close();
+
+        // The journal holds every one of those changes
+        ProductDAO reopened = open(ProductStorage.JOURNAL);
+        for (int id = 1; id <= 4; id++) {
+            assertEquals(sold[id], reopened.getProductById(id).getSold());
+            assertEquals(100 - sold[id] + restocked[id], reopened.getProductById(id).getQuantity());
+        }
+        reopened.close();
+    }
+
+    @Test(timeout = 120_000)
+    public void concurrentSalesNeverOversell() throws Exception {
+        ProductDAO dao = open(ProductStorage.SNAPSHOT);
+        dao.addProduct(new Product(0, "Last units", "", 1.00, 1000, 0, "Tools", 0, 5));
+        AtomicInteger sales = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        runConcurrently(16, () -> {
+            for (int i = 0; i < 200; i++) {
+                StockResult result = dao.sell(1, 1);
+                if (result == StockResult.OK) {
+                    sales.incrementAndGet();
+                } else {
+                    assertEquals(StockResult.INSUFFICIENT_STOCK, result);
+                    refused.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        assertEquals(1000, sales.get());
+        assertEquals(16 * 200 - 1000, refused.get());
+        assertEquals(0, dao.getProductById(1).getQuantity());
+        assertEquals(1000, dao.getProductById(1).getSold());
+        dao.close();
+    }
+}
@@ -0,0 +1,198 @@
+package dao;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import models.Product;
+import utils.BinaryIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProductJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Product product(int id, int quantity) {
+        return new Product(id, "Product " + id, "Description " + id, 1.25, quantity, 0, "Tools", 0, 5);
+    }
+
+    private File writeLog(int count) throws IOException {
+        File file = new File(folder.getRoot(), "products.log");
+        ProductJournal journal = new ProductJournal(file.getPath());
+        for (int id = 1; id <= count; id++) {
+            journal.appendPut(product(id, id));
+        }
+        journal.sync();
+        journal.close();
+        return file;
+    }
+
+    private static Map<Integer, Product> replay(File file) throws IOException {
+        Map<Integer, Product> products = new LinkedHashMap<>();
+        new ProductJournal(file.getPath()).replay(products);
+        return products;
+    }
+
+    @Test
+    public void replaysPutsBatchesAndDeletes() throws IOException {
+        File file = new File(folder.getRoot(), "products.log");
+        ProductJournal journal = new ProductJournal(file.getPath());
+        journal.appendPut(product(1, 10));
+        journal.appendPuts(Arrays.asList(product(2, 20), product(3, 30)));
+        journal.appendPut(product(1, 7));
+        journal.appendDelete(2);
+        journal.close();
+
+        Map<Integer, Product> products = new LinkedHashMap<>();
+        assertFalse(new ProductJournal(file.getPath()).replay(products));
+        assertEquals(2, products.size());
+        assertEquals(7, products.get(1).getQuantity());
+        assertEquals(30, products.get(3).getQuantity());
+        assertEquals("Tools", products.get(3).getCategory());
+    }
+
+    @Test
+    public void dropsTornLastRecordAndKeepsAppending() throws IOException {
+        File file = writeLog(10);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        long tornLength = file.length();
+
+        assertEquals(9, replay(file).size());
+        assertTrue(file.length() < tornLength);
+
+        ProductJournal journal = new ProductJournal(file.getPath());
+        journal.appendPut(product(42, 1));
+        journal.close();
+        Map<Integer, Product> products = replay(file);
+        assertEquals(10, products.size());
+        assertTrue(products.containsKey(42));
+    }
+
+    @Test
+    public void dropsZeroFilledTail() throws IOException {
+        File file = writeLog(5);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[4096]);
+        }
+        assertEquals(5, replay(file).size());
+    }
+
+    @Test
+    public void refusesDamageBeforeTheLastRecord() throws IOException {
+        File file = writeLog(50);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Arrays.fill(bytes, bytes.length / 2, bytes.length / 2 + 8, (byte) 0);
+        Files.write(file.toPath(), bytes);
+
+        try {
+            replay(file);
+            fail("Damaged journal was replayed");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(bytes.length, file.length());
+    }
+
+    @Test
+    public void refusesChecksumFailureBeforeTheLastRecord() throws IOException {
+        File file = writeLog(3);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        // Inside the first record, past the file header and the record's frame
+        bytes[BinaryIO.HEADER_SIZE + 12 + 4] ^= 0x40;
+        Files.write(file.toPath(), bytes);
+
+        try {
+            replay(file);
+            fail("Damaged journal was replayed");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void daoRefusesToStartOnDamagedJournal() throws IOException {
+        ProductDAO dao = new ProductDAO(ProductStorage.JOURNAL, folder.getRoot());
+        for (int i = 0; i < 50; i++) {
+            dao.addProduct(product(0, i));
+            dao.flush();
+        }
+        dao.close();
+
+        File log = new File(folder.getRoot(), "products.log");
+        byte[] bytes = Files.readAllBytes(log.toPath());
+        Arrays.fill(bytes, bytes.length / 2, bytes.length / 2 + 8, (byte) 0);
+        Files.write(log.toPath(), bytes);
+
+        try {
+            new ProductDAO(ProductStorage.JOURNAL, folder.getRoot()).close();
+            fail("Started on a damaged journal");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getMessage().contains("products.log"));
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(log.toPath()));
+    }
+
+    @Test
+    public void reopensAfterCompaction() throws IOException {
+        ProductDAO dao = new ProductDAO(ProductStorage.JOURNAL, folder.getRoot());
+        dao.setCompactionThreshold(512);
+        for (int i = 0; i < 200; i++) {
+            dao.addProduct(product(0, i));
+            dao.flush();
+        }
+        dao.close();
+
+        ProductDAO reopened = new ProductDAO(ProductStorage.JOURNAL, folder.getRoot());
+        assertEquals(200, reopened.getAllProducts().size());
+        assertEquals(199, reopened.getProductById(200).getQuantity());
+        reopened.close();
+    }
+
+    @Test
+    public void rollAfterFailedCompactionKeepsTheEarlierLog() throws IOException {
+        File file = new File(folder.getRoot(), "products.log");
+        ProductJournal journal = new ProductJournal(file.getPath());
+        journal.appendPut(product(1, 1));
+        journal.roll();
+        // The compaction failed, so compactionFinished was never called
+        journal.appendPut(product(2, 2));
+        journal.appendDelete(2);
+        journal.appendPut(product(3, 3));
+        journal.roll();
+        journal.appendPut(product(4, 4));
+        journal.close();
+
+        Map<Integer, Product> products = new LinkedHashMap<>();
+        new ProductJournal(file.getPath()).replay(products);
+        assertEquals(Arrays.asList(1, 3, 4), new ArrayList<>(products.keySet()));
+    }
+
+    @Test
+    public void failedCompactionLosesNoChanges() throws IOException {
+        ProductDAO dao = new ProductDAO(ProductStorage.JOURNAL, folder.getRoot());
+        dao.setCompactionThreshold(256);
+        // A directory where the snapshot goes makes every compaction fail
+        File snapshot = new File(folder.getRoot(), "products.dat");
+        assertTrue(new File(snapshot, "blocker").mkdirs());
+        for (int i = 0; i < 300; i++) {
+            dao.addProduct(product(0, i));
+            dao.flush();
+        }
+        dao.close();
+        assertTrue(new File(folder.getRoot(), "products.log.compacting").exists());
+
+        assertTrue(new File(snapshot, "blocker").delete() && snapshot.delete());
+        ProductDAO reopened = new ProductDAO(ProductStorage.JOURNAL, folder.getRoot());
+        assertEquals(300, reopened.getAllProducts().size());
+        assertEquals(0, reopened.getProductById(1).getQuantity());
+        reopened.close();
+    }
+}
@@ -0,0 +1,69 @@
+package dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import models.Supplier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SupplierDAOTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 30_000)
+    public void syncSavesDoNotDeadlockWithFlusher() throws Exception {
+        SupplierDAO dao = new SupplierDAO(folder.getRoot());
+        dao.getPersistence().setMode(PersistenceScheduler.Mode.SYNC, 0);
+        AtomicBoolean done = new AtomicBoolean(false);
+        // Stands in for the scheduled flusher and the shutdown hook
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                dao.getPersistence().flush();
+            }
+        });
+        flusher.start();
+        try {
+            for (int i = 0; i < 500; i++) {
+                Supplier supplier = new Supplier(0, "Supplier " + i, "", "", "", "");
+                dao.saveSupplier(supplier);
+                if (i % 2 == 0) {
+                    dao.deleteSupplier(supplier);
+                }
+            }
+        } finally {
+            done.set(true);
+            flusher.join();
+        }
+        dao.getPersistence().close();
+
+        SupplierDAO reopened = new SupplierDAO(folder.getRoot());
+        assertEquals(250, reopened.getAllSuppliers().size());
+        reopened.getPersistence().close();
+    }
+
+    @Test
+    public void refusesToStartOnDamagedFile() throws IOException {
+        SupplierDAO dao = new SupplierDAO(folder.getRoot());
+        dao.saveSupplier(new Supplier(0, "Acme", "", "", "", ""));
+        dao.getPersistence().close();
+        File file = new File(folder.getRoot(), "suppliers.dat");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] damaged = Arrays.copyOf(bytes, bytes.length - 3);
+        Files.write(file.toPath(), damaged);
+
+        try {
+            new SupplierDAO(folder.getRoot());
+            fail("Expected a damaged supplier file to be refused");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("suppliers.dat"));
+        }
+        assertArrayEquals(damaged, Files.readAllBytes(file.toPath()));
+    }
+}
@@ -0,0 +1,88 @@
+package dao;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import models.Product;
+
+/**
+ * Operations per second against one ProductDAO for read-heavy mixes at 1, 4
+ * and 16 threads. Reads are id lookups and the dashboard total; writes are
+ * sales and restocks. Not a unit test; run it with the test classpath, e.g.
+ * java -cp target/classes:target/test-classes dao.ThroughputBenchmark 100000
+ */
+public class ThroughputBenchmark {
+    private static final long RUN_MILLIS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        File directory = Files.createTempDirectory("throughput").toFile();
+        ProductDAO dao = new ProductDAO(ProductStorage.JOURNAL, directory);
+        List<Product> batch = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            batch.add(new Product(id, "Product " + id, "", 9.99, 1_000_000, 0, "Tools", 0, 5));
+        }
+        dao.bulkUpsert(batch);
+
+        System.out.printf("%d cores, %,d products%n", Runtime.getRuntime().availableProcessors(), count);
+        for (int readPercent : new int[] {90, 99}) {
+            for (int threads : new int[] {1, 4, 16}) {
+                // First pass warms up the JIT
+                run(dao, count, threads, readPercent);
+                double perSecond = run(dao, count, threads, readPercent);
+                System.out.printf("%d%% reads, %2d threads: %,.0f ops/s%n", readPercent, threads, perSecond);
+            }
+        }
+        dao.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private static double run(ProductDAO dao, int count, int threads, int readPercent) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long sink = 0;
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long local = 0;
+                long done = 0;
+                while (running.get()) {
+                    int id = 1 + random.nextInt(count);
+                    int roll = random.nextInt(100);
+                    if (roll < readPercent - 5) {
+                        local += dao.getProductById(id).getQuantity();
+                    } else if (roll < readPercent) {
+                        local += dao.getTotalInventoryValueCents();
+                    } else if ((roll & 1) == 0) {
+                        dao.sell(id, 1);
+                    } else {
+                        dao.restock(id, 1);
+                    }
+                    done++;
+                }
+                operations.add(done);
+                return local;
+            }));
+        }
+        long start = System.nanoTime();
+        Thread.sleep(RUN_MILLIS);
+        running.set(false);
+        for (Future<Long> future : futures) {
+            sink += future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return operations.sum() * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,90 @@
+package ui;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.TableRowSorter;
+import models.Product;
+import org.junit.Test;
+
+public class ProductTableModelTest {
+    private static Product product(int id, int quantity) {
+        return new Product(id, "Product " + id, "", 1.0, quantity, 0, "Tools", 0, 5);
+    }
+
+    private static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            products.add(product(id, id));
+        }
+        return Collections.unmodifiableList(products);
+    }
+
+    // Ids in the order the sorted view shows them
+    private static List<Integer> viewIds(ProductTableModel model, TableRowSorter<ProductTableModel> sorter) {
+        List<Integer> ids = new ArrayList<>();
+        for (int row = 0; row < sorter.getViewRowCount(); row++) {
+            ids.add(model.getProductAt(sorter.convertRowIndexToModel(row)).getId());
+        }
+        return ids;
+    }
+
+    private static void assertRowsMatchIds(ProductTableModel model) {
+        for (int row = 0; row < model.getRowCount(); row++) {
+            assertEquals(row, model.getRowForId(model.getProductAt(row).getId()));
+        }
+    }
+
+    @Test
+    public void updatesAndRemovesRowsUnderASorter() {
+        ProductTableModel model = new ProductTableModel(products(6));
+        TableRowSorter<ProductTableModel> sorter = new TableRowSorter<>(model);
+        sorter.setSortKeys(Collections.singletonList(new RowSorter.SortKey(0, SortOrder.ASCENDING)));
+        sorter.setSortsOnUpdates(true);
+        // The table passes model events on to its sorter
+        JTable table = new JTable(model);
+        table.setRowSorter(sorter);
+
+        model.removeProduct(2);
+        model.removeProduct(6);
+        model.putProduct(product(3, 99));
+        model.putProduct(product(7, 7));
+        model.removeProduct(42);
+
+        assertEquals(Arrays.asList(1, 3, 4, 5, 7), viewIds(model, sorter));
+        assertEquals(99, model.getProductAt(model.getRowForId(3)).getQuantity());
+        assertEquals(-1, model.getRowForId(2));
+        assertRowsMatchIds(model);
+    }
+
+    @Test
+    public void refreshReplacesTheIdMap() {
+        ProductTableModel model = new ProductTableModel(products(3));
+        model.removeProduct(1);
+        model.refreshData(products(2));
+
+        assertEquals(2, model.getRowCount());
+        assertEquals(0, model.getRowForId(1));
+        assertEquals(-1, model.getRowForId(3));
+        assertRowsMatchIds(model);
+    }
+
+    @Test
+    public void changesNeverReachTheRefreshedList() {
+        List<Product> rows = new ArrayList<>(products(4));
+        ProductTableModel model = new ProductTableModel(products(1));
+        model.refreshData(rows);
+        model.putProduct(product(2, 50));
+        model.putProduct(product(5, 5));
+        model.removeProduct(1);
+
+        assertEquals(4, rows.size());
+        assertEquals(1, rows.get(0).getId());
+        assertEquals(2, rows.get(1).getQuantity());
+        assertEquals(4, model.getRowCount());
+        assertRowsMatchIds(model);
+    }
+}
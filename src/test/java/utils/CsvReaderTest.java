@@ -0,0 +1,116 @@
+package utils;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvReaderTest {
+    private static final String CONTENT =
+        "ID,Name,Description\n" +
+        "1,Plain,simple\n" +
+        "2,\"Comma, inside\",\"quoted \"\"word\"\"\"\r\n" +
+        "3,TV 55\" LED,stray quote mid-field\n" +
+        "4,\"Two\nlines\",\"and\r\nthree\nlines\"\n" +
+        "\n" +
+        "5,\"\",\"closed\"then text\n" +
+        "6,Café über,€5\n" +
+        "7,last,no newline";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> parse(File file, long chunkSize) throws IOException {
+        try (CsvReader reader = CsvReader.open(file, chunkSize)) {
+            return reader.parallelMap(row -> {
+                List<String> fields = new ArrayList<>();
+                for (int i = 0; i < row.size(); i++) {
+                    fields.add(row.getString(i));
+                }
+                return row.getLineNumber() + "/" + row.getLineCount() + (row.isUnterminated() ? "!" : "") + " " + fields;
+            });
+        }
+    }
+
+    @Test
+    public void parsesQuotingRules() throws IOException {
+        File file = write(CONTENT);
+        try (CsvReader reader = CsvReader.open(file)) {
+            assertEquals(Arrays.asList("ID", "Name", "Description"), reader.getHeader());
+        }
+        assertEquals(Arrays.asList(
+            "2/1 [1, Plain, simple]",
+            "3/1 [2, Comma, inside, quoted \"word\"]",
+            "4/1 [3, TV 55\" LED, stray quote mid-field]",
+            "5/4 [4, Two\nlines, and\r\nthree\nlines]",
+            "10/1 [5, , closedthen text]",
+            "11/1 [6, Café über, €5]",
+            "12/1 [7, last, no newline]"
+        ), parse(file, Long.MAX_VALUE / 4));
+    }
+
+    @Test
+    public void sameRowsWhereverChunksAreCut() throws IOException {
+        File file = write(CONTENT);
+        List<String> expected = parse(file, Long.MAX_VALUE / 4);
+        for (int chunkSize = 1; chunkSize <= CONTENT.length(); chunkSize++) {
+            assertEquals("chunk size " + chunkSize, expected, parse(file, chunkSize));
+        }
+    }
+
+    @Test
+    public void strayQuoteDoesNotSwallowLaterRows() throws IOException {
+        File file = write("ID,Name,Description,Price,Quantity\n" +
+            "1,TV 55\" LED,desc,10,1\n" +
+            "2,Radio,desc,5,1\n" +
+            "3,Lamp,desc,5,1\n" +
+            "4,Desk,desc,5,1\n");
+        for (int chunkSize : new int[] {1, 7, 40, 1 << 20}) {
+            assertEquals(4, parse(file, chunkSize).size());
+        }
+    }
+
+    @Test
+    public void unclosedQuoteIsReportedWithItsLines() throws IOException {
+        File file = write("ID,Name\n" +
+            "1,\"Broken\n" +
+            "2,Radio\n" +
+            "3,Lamp\n");
+        for (int chunkSize : new int[] {1, 5, 1 << 20}) {
+            assertEquals(Arrays.asList("2/3! [1, Broken\n2,Radio\n3,Lamp\n]"), parse(file, chunkSize));
+        }
+    }
+
+    @Test
+    public void skipsByteOrderMark() throws IOException {
+        File file = write("\uFEFFID,Name\n1,A\n");
+        try (CsvReader reader = CsvReader.open(file)) {
+            assertEquals(Arrays.asList("ID", "Name"), reader.getHeader());
+        }
+        assertEquals(Arrays.asList("2/1 [1, A]"), parse(file, 1));
+    }
+
+    @Test
+    public void parsesNumbers() throws IOException {
+        File file = write("A,B,C\n 42 ,12.345,\"-7\"\n-5,0.5,3.999\n");
+        List<String> values = new ArrayList<>();
+        try (CsvReader reader = CsvReader.open(file)) {
+            values.addAll(reader.parallelMap(row -> row.getInt(0) + " " + row.getCents(1) + " " + row.getCents(2)));
+        }
+        assertEquals(Arrays.asList("42 1235 -700", "-5 50 400"), values);
+    }
+}
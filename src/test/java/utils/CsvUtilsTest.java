@@ -0,0 +1,156 @@
+package utils;
+
+import static org.junit.Assert.*;
+
+import dao.ProductDAO;
+import dao.ProductStorage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import models.Product;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvUtilsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProductDAO dao;
+
+    @Before
+    public void openDao() throws IOException {
+        dao = new ProductDAO(ProductStorage.SNAPSHOT, folder.newFolder("data"));
+    }
+
+    @After
+    public void closeDao() {
+        dao.close();
+    }
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void strayQuoteKeepsFollowingRows() throws IOException {
+        File file = write("ID,Name,Description,Price,Quantity\n" +
+            "1,TV 55\" LED,desc,10,1\n" +
+            "2,Radio,desc,5,1\n" +
+            "3,Lamp,desc,5,1\n" +
+            "4,Desk,desc,5,1\n");
+        ImportReport report = CsvUtils.importFromCsv(file, dao);
+        assertEquals(4, report.getInserted());
+        assertTrue(report.getRejected().isEmpty());
+        assertEquals("TV 55\" LED", dao.getProductById(1).getName());
+    }
+
+    @Test
+    public void unclosedQuoteRejectsEveryLineItAbsorbed() throws IOException {
+        File file = write("ID,Name,Description,Price,Quantity\n" +
+            "1,Good,desc,10,1\n" +
+            "2,\"Broken,desc,10,1\n" +
+            "3,Radio,desc,5,1\n" +
+            "4,Lamp,desc,5,1\n");
+        ImportReport report = CsvUtils.importFromCsv(file, dao);
+        assertEquals(1, report.getInserted());
+        assertEquals(3, report.getRejected().size());
+        assertEquals(3, report.getRejected().get(0).getLineNumber());
+        assertEquals(5, report.getRejected().get(2).getLineNumber());
+    }
+
+    @Test
+    public void exportThenImportRoundTrips() throws IOException {
+        Product product = new Product(0, "Shelf, \"oak\"", "two\nlines", 0.0, 3, 2, "Furniture", 7, 4);
+        product.setPriceCents(12345);
+        dao.addProduct(product);
+        File file = folder.newFile("export.csv");
+        CsvUtils.exportToCsv(dao.snapshot(), file, Arrays.asList(CsvColumn.values()), false);
+
+        ProductDAO other = new ProductDAO(ProductStorage.SNAPSHOT, folder.newFolder("other"));
+        try {
+            ImportReport report = CsvUtils.importFromCsv(file, other);
+            assertEquals(1, report.getInserted());
+            Product imported = other.getProductById(product.getId());
+            assertEquals("Shelf, \"oak\"", imported.getName());
+            assertEquals("two\nlines", imported.getDescription());
+            assertEquals(12345, imported.getPriceCents());
+            assertEquals("Furniture", imported.getCategory());
+            assertEquals(7, imported.getSupplierId());
+            assertEquals(4, imported.getReorderLevel());
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void partialExportReimportKeepsOmittedColumns() throws IOException {
+        dao.addProduct(new Product(0, "Shelf", "Oak shelf", 10.00, 3, 9, "Furniture", 7, 4));
+        dao.addProduct(new Product(0, "Lamp", "Desk lamp", 5.00, 8, 2, "Lighting", 2, 6));
+        File file = folder.newFile("partial.csv");
+        CsvUtils.exportToCsv(dao.snapshot(), file,
+            Arrays.asList(CsvColumn.ID, CsvColumn.NAME, CsvColumn.PRICE, CsvColumn.QUANTITY), false);
+        // A price change and a new product in the same partial file
+        String edited = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)
+            .replace("Lamp,5.00", "Lamp,6.50") + "3,Chair,20.00,1\n";
+        Files.write(file.toPath(), edited.getBytes(StandardCharsets.UTF_8));
+
+        ImportReport report = CsvUtils.importFromCsv(file, dao);
+        assertEquals(1, report.getInserted());
+        assertEquals(2, report.getUpdated());
+
+        Product shelf = dao.getProductById(1);
+        assertEquals("Oak shelf", shelf.getDescription());
+        assertEquals(9, shelf.getSold());
+        assertEquals("Furniture", shelf.getCategory());
+        assertEquals(7, shelf.getSupplierId());
+        assertEquals(4, shelf.getReorderLevel());
+        Product lamp = dao.getProductById(2);
+        assertEquals(650, lamp.getPriceCents());
+        assertEquals(2, lamp.getSold());
+        assertEquals("Lighting", lamp.getCategory());
+        assertEquals(6, lamp.getReorderLevel());
+
+        Product chair = dao.getProductById(3);
+        assertEquals(0, chair.getSold());
+        assertEquals(0, chair.getSupplierId());
+        assertEquals(Product.DEFAULT_REORDER_LEVEL, chair.getReorderLevel());
+        assertEquals(Collections.emptyList(), dao.verifyAggregates());
+    }
+
+    @Test
+    public void headerlessFileUsesTheLegacyLayout() throws IOException {
+        File file = write("1,Hammer,Steel,9.99,10,2\n" +
+            "2,Saw,,x,1,0\n" +
+            "3,Drill,Cordless,49.50,4,1\n");
+        ImportReport report = CsvUtils.importFromCsv(file, dao);
+        assertEquals(2, report.getInserted());
+        assertEquals(1, report.getRejected().size());
+        assertEquals(2, report.getRejected().get(0).getLineNumber());
+        Product hammer = dao.getProductById(1);
+        assertEquals("Hammer", hammer.getName());
+        assertEquals("Steel", hammer.getDescription());
+        assertEquals(999, hammer.getPriceCents());
+        assertEquals(10, hammer.getQuantity());
+        assertEquals(2, hammer.getSold());
+        assertEquals(4950, dao.getProductById(3).getPriceCents());
+    }
+
+    @Test
+    public void unknownHeaderNamesUseTheLegacyLayout() throws IOException {
+        File file = write("Code,Title,Notes,Cost,Stock,Sales\n" +
+            "7,Lamp,Desk,5,3,1\n");
+        ImportReport report = CsvUtils.importFromCsv(file, dao);
+        assertEquals(1, report.getInserted());
+        assertTrue(report.getRejected().isEmpty());
+        assertEquals("Lamp", dao.getProductById(7).getName());
+        assertEquals(3, dao.getProductById(7).getQuantity());
+    }
+}
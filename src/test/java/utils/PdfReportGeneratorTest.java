@@ -0,0 +1,72 @@
+package utils;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+import dao.ProductDAO;
+import dao.ProductStorage;
+import models.Product;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PdfReportGeneratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProductDAO catalog(int count) throws IOException {
+        ProductDAO dao = new ProductDAO(ProductStorage.SNAPSHOT, folder.newFolder());
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            // Every tenth product is at its reorder point
+            products.add(new Product(id, "Product " + id, "", 1.00, id % 10 == 0 ? 1 : 50, id, "Tools", 0, 5));
+        }
+        dao.bulkUpsert(products);
+        return dao;
+    }
+
+    @Test
+    public void writesSummaryAndEveryStockRow() throws IOException {
+        ProductDAO dao = catalog(3000);
+        File file = folder.newFile("report.pdf");
+        JobContext context = new JobContext();
+        PdfReportGenerator.generatePdfReport(dao, file, context);
+
+        PdfReader reader = new PdfReader(file.getPath());
+        try {
+            assertEquals(reader.getNumberOfPages(), context.getPages());
+            assertTrue(reader.getNumberOfPages() > 50);
+            String first = PdfTextExtractor.getTextFromPage(reader, 1);
+            assertTrue(first.contains("Inventory Stock Report"));
+            assertTrue(first.contains("Products at reorder point 300"));
+            // Top seller is the product that sold the most
+            assertTrue(first.contains("Product 3000"));
+            String last = PdfTextExtractor.getTextFromPage(reader, reader.getNumberOfPages());
+            assertTrue(last.contains("Product 3000"));
+            assertTrue(last.contains("Page " + reader.getNumberOfPages()));
+        } finally {
+            reader.close();
+        }
+        assertEquals(3000 + 300 + 10, context.getRows());
+        dao.close();
+    }
+
+    @Test
+    public void cancelledReportLeavesNoFile() throws IOException {
+        ProductDAO dao = catalog(5000);
+        File file = new File(folder.getRoot(), "cancelled.pdf");
+        JobContext context = new JobContext();
+        context.cancel();
+        try {
+            PdfReportGenerator.generatePdfReport(dao, file, context);
+            fail("Expected the report to be cancelled");
+        } catch (CancellationException e) {
+            assertFalse(file.exists());
+        }
+        dao.close();
+    }
+}
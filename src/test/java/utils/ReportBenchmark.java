@@ -0,0 +1,61 @@
+package utils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import dao.ProductDAO;
+import dao.ProductStorage;
+import models.Product;
+import models.Supplier;
+
+/**
+ * Generates the Excel and PDF reports from a generated catalog and prints the
+ * time, file size and pages. Not a unit test; run it with the test classpath
+ * and a small heap to check that the reports stream, e.g.
+ * java -Xmx256m -cp target/classes:target/test-classes:$(cat cp.txt) utils.ReportBenchmark 1000000
+ */
+public class ReportBenchmark {
+    private static final String[] CATEGORIES = {"Tools", "Toys", "Food", "Garden", "Books", "Music", "Home", "Sport"};
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        boolean pdf = args.length < 2 || !args[1].equals("excel");
+        File directory = Files.createTempDirectory("reports").toFile();
+        ProductDAO dao = new ProductDAO(ProductStorage.SNAPSHOT, directory);
+        Random random = new Random(1);
+        List<Product> batch = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            batch.add(new Product(id, "Product " + id, "", 1 + random.nextInt(10000) / 100.0, random.nextInt(500),
+                random.nextInt(100), CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(50), 20));
+        }
+        dao.bulkUpsert(batch);
+        batch = null;
+        List<Supplier> suppliers = new ArrayList<>();
+        for (int id = 1; id <= 50; id++) {
+            suppliers.add(new Supplier(id, "Supplier " + id, "", "", "", ""));
+        }
+
+        File excel = new File(directory, "report.xlsx");
+        JobContext context = new JobContext();
+        long start = System.nanoTime();
+        ReportGenerator.generateExcelReport(dao, suppliers, excel, context);
+        System.out.printf("Excel, %,d products: %.1f s, %,d bytes%n", count, (System.nanoTime() - start) / 1e9, excel.length());
+
+        if (pdf) {
+            File report = new File(directory, "report.pdf");
+            context = new JobContext();
+            start = System.nanoTime();
+            PdfReportGenerator.generatePdfReport(dao, report, context);
+            System.out.printf("PDF, %,d products: %.1f s, %,d bytes, %,d pages%n", count,
+                (System.nanoTime() - start) / 1e9, report.length(), context.getPages());
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("Heap limit %,d MB%n", runtime.maxMemory() >> 20);
+        dao.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,74 @@
+package utils;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import dao.ProductDAO;
+import dao.ProductStorage;
+import models.Product;
+import models.Supplier;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportGeneratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProductDAO catalog(int count) throws IOException {
+        ProductDAO dao = new ProductDAO(ProductStorage.SNAPSHOT, folder.newFolder());
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            products.add(new Product(id, "Product " + id, "", 2.50, 10, id % 3, id % 2 == 0 ? "Tools" : "Toys", id % 3, 5));
+        }
+        dao.bulkUpsert(products);
+        return dao;
+    }
+
+    private static List<Supplier> suppliers() {
+        return Arrays.asList(new Supplier(1, "Acme", "", "", "", ""), new Supplier(2, "Globex", "", "", "", ""));
+    }
+
+    @Test
+    public void writesEverySheetFromTheCatalog() throws IOException {
+        ProductDAO dao = catalog(5000);
+        File file = folder.newFile("report.xlsx");
+        ReportGenerator.generateExcelReport(dao, suppliers(), file);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new FileInputStream(file))) {
+            assertEquals(Arrays.asList("Summary", "Products", "Sales by Category", "By Supplier"),
+                Arrays.asList(workbook.getSheetName(0), workbook.getSheetName(1), workbook.getSheetName(2), workbook.getSheetName(3)));
+            Sheet products = workbook.getSheet("Products");
+            assertEquals(5000, products.getLastRowNum());
+            assertEquals("Product 5000", products.getRow(5000).getCell(1).getStringCellValue());
+            assertEquals("Globex", products.getRow(2).getCell(3).getStringCellValue());
+            assertEquals(25.0, products.getRow(1).getCell(7).getNumericCellValue(), 0.001);
+
+            Sheet summary = workbook.getSheet("Summary");
+            assertEquals(5000, summary.getRow(1).getCell(1).getNumericCellValue(), 0);
+            assertEquals(5000 * 25.0, summary.getRow(4).getCell(1).getNumericCellValue(), 0.001);
+            assertEquals(2, workbook.getSheet("By Supplier").getLastRowNum());
+            assertEquals(2, workbook.getSheet("Sales by Category").getLastRowNum());
+        }
+        dao.close();
+    }
+
+    @Test
+    public void cancelledReportLeavesNoFile() throws IOException {
+        ProductDAO dao = catalog(10000);
+        File file = new File(folder.getRoot(), "cancelled.xlsx");
+        JobContext context = new JobContext();
+        context.cancel();
+        try {
+            ReportGenerator.generateExcelReport(dao, suppliers(), file, context);
+            fail("Expected the report to be cancelled");
+        } catch (CancellationException e) {
+            assertFalse(file.exists());
+        }
+        dao.close();
+    }
+}